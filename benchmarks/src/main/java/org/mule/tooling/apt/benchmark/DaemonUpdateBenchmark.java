@@ -0,0 +1,98 @@
+package org.mule.tooling.apt.benchmark;
+
+import org.mule.tooling.apt.daemon.DiagramDaemon;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.tools.JavaFileObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updates one file of a synthetic source tree on disk through a warm {@link DiagramDaemon}, as an editor saving it
+ * would. The file gains or loses a field on each update, so its package diagram changes every time. The score is
+ * the time of one update, which the daemon aims to keep under 100 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaemonUpdateBenchmark
+{
+    @Param({"100"})
+    public int packages;
+
+    @Param({"50"})
+    public int typesPerPackage;
+
+    @Param({"20"})
+    public int membersPerType;
+
+    @Param({"4"})
+    public int hierarchyDepth;
+
+    private Path root;
+    private DiagramDaemon daemon;
+    private Path changed;
+    private String original;
+    private boolean edited;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("daemon-benchmark");
+        Path sources = root.resolve("src");
+        for (JavaFileObject source : SyntheticSources.generate(packages, typesPerPackage, membersPerType, hierarchyDepth))
+        {
+            Path file = sources.resolve(source.toUri().getPath().substring(1));
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getCharContent(true).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        changed = sources.resolve("bench/p0/Type1.java");
+        original = new String(Files.readAllBytes(changed), StandardCharsets.UTF_8);
+        daemon = new DiagramDaemon(Collections.singletonList(sources), root.resolve("out"), Collections.emptyList(), Collections.emptyMap());
+        daemon.build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        daemon.close();
+        try (Stream<Path> files = Files.walk(root))
+        {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+            {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public DiagramDaemon.Result update() throws IOException
+    {
+        edited = !edited;
+        String code = edited ? original.replace("\n{\n", "\n{\n    private int edited;\n") : original;
+        Files.write(changed, code.getBytes(StandardCharsets.UTF_8));
+        return daemon.update(Collections.singletonList(changed));
+    }
+}
@@ -0,0 +1,108 @@
+package org.mule.tooling.apt.benchmark;
+
+import org.mule.tooling.apt.DiagramGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs {@link DiagramGenerator} under in-memory javac ({@code -proc:only}) over a synthetic source tree. Run with
+ * {@code -prof gc}: {@code gc.alloc.rate.norm} divided by the {@code types} counter's per-operation value is the
+ * allocation per type, and the {@code types} counter itself is the per-type throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiagramGenerationBenchmark
+{
+    @Param({"10"})
+    public int packages;
+
+    @Param({"50"})
+    public int typesPerPackage;
+
+    @Param({"20"})
+    public int membersPerType;
+
+    @Param({"4"})
+    public int hierarchyDepth;
+
+    @Param({"1"})
+    public int threads;
+
+    private JavaCompiler compiler;
+    private StandardJavaFileManager standardFileManager;
+    private List<JavaFileObject> sources;
+
+    @Setup
+    public void setUp()
+    {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        standardFileManager = compiler.getStandardFileManager(null, null, null);
+        sources = SyntheticSources.generate(packages, typesPerPackage, membersPerType, hierarchyDepth);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        standardFileManager.close();
+    }
+
+    @Benchmark
+    public long generate(TypeCounter counter)
+    {
+        InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, new DiagnosticCollector<>(),
+                                                             Arrays.asList("-proc:only",
+                                                                           "-Adiagram.incremental=false",
+                                                                           "-Adiagram.threads=" + threads),
+                                                             null, sources);
+        task.setProcessors(Collections.singletonList(new DiagramGenerator()));
+        if (!task.call())
+        {
+            throw new IllegalStateException("Synthetic sources did not compile");
+        }
+        counter.types += sources.size();
+        return fileManager.getBytesWritten();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TypeCounter
+    {
+        public long types;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            types = 0;
+        }
+    }
+}
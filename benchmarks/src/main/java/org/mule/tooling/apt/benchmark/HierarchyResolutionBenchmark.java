@@ -0,0 +1,150 @@
+package org.mule.tooling.apt.benchmark;
+
+import org.mule.tooling.apt.HierarchyIndex;
+import org.mule.tooling.apt.TypeResolution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.JavacTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolves the hierarchy of every type of an analyzed synthetic source tree into one fresh {@link HierarchyIndex}
+ * per invocation, so its memoization is the same in both modes and only the {@link TypeResolution} varies.
+ * {@code shared} uses one service for all of them, as the processor does; {@code perType} creates one, with an empty
+ * memo, per type, which is what every supertype lookup cost before the service existed. Run with {@code -prof gc} to
+ * compare {@code gc.alloc.rate.norm}, which is per type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(HierarchyResolutionBenchmark.TYPES)
+public class HierarchyResolutionBenchmark
+{
+    static final int TYPES = 500;
+
+    @Param({"shared", "perType"})
+    public String resolution;
+
+    @Param({"4"})
+    public int hierarchyDepth;
+
+    private StandardJavaFileManager fileManager;
+    private JavacTask task;
+    private TypeResolution shared;
+    private List<TypeElement> types;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        fileManager = compiler.getStandardFileManager(null, null, null);
+        task = (JavacTask) compiler.getTask(null, new InMemoryFileManager(fileManager), new DiagnosticCollector<>(),
+                                            Collections.singletonList("-proc:none"), null,
+                                            SyntheticSources.generate(10, TYPES / 10, 2, hierarchyDepth));
+        types = new ArrayList<>(TYPES);
+        for (Element element : task.analyze())
+        {
+            if (element instanceof TypeElement)
+            {
+                types.add((TypeElement) element);
+            }
+        }
+        shared = new TypeResolution(task.getElements(), task.getTypes());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        fileManager.close();
+    }
+
+    @Benchmark
+    public long resolve()
+    {
+        PerTypeResolution perType = "shared".equals(resolution) ? null : new PerTypeResolution(task.getElements(), task.getTypes());
+        HierarchyIndex index = new HierarchyIndex(perType != null ? perType : shared);
+        long edges = 0;
+        for (TypeElement type : types)
+        {
+            if (perType != null)
+            {
+                perType.next();
+            }
+            edges += index.get(type).getEdgeCount();
+        }
+        return edges;
+    }
+
+    /**
+     * Hands every question to a service created for the current type, looking {@code java.lang.Object} up again and
+     * starting from an empty memo each time.
+     */
+    private static class PerTypeResolution extends TypeResolution
+    {
+        private final Elements elements;
+        private final Types types;
+        private TypeResolution current;
+
+        PerTypeResolution(Elements elements, Types types)
+        {
+            super(elements, types);
+            this.elements = elements;
+            this.types = types;
+        }
+
+        void next()
+        {
+            current = new TypeResolution(elements, types);
+        }
+
+        @Override public boolean isObject(TypeMirror type)
+        {
+            return current.isObject(type);
+        }
+
+        @Override public String edgeName(TypeMirror type)
+        {
+            return current.edgeName(type);
+        }
+
+        @Override public TypeElement asTypeElement(TypeMirror type)
+        {
+            return current.asTypeElement(type);
+        }
+
+        @Override public TypeElement getTypeElement(String qualifiedName)
+        {
+            return current.getTypeElement(qualifiedName);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.mule.tooling.apt.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Keeps everything javac writes in memory, so the benchmarks measure the processor and not the disk.
+ */
+public class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager>
+{
+    private final Map<URI, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+
+    public InMemoryFileManager(JavaFileManager fileManager)
+    {
+        super(fileManager);
+    }
+
+    @Override public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling)
+    {
+        String path = packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+        return new Output(URI.create("memory:///" + location.getName() + "/" + path), JavaFileObject.Kind.OTHER);
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+    {
+        return new Output(URI.create("memory:///" + location.getName() + "/" + className.replace('.', '/') + kind.extension), kind);
+    }
+
+    public long getBytesWritten()
+    {
+        long bytes = 0;
+        for (ByteArrayOutputStream output : outputs.values())
+        {
+            bytes += output.size();
+        }
+        return bytes;
+    }
+
+    private class Output extends SimpleJavaFileObject
+    {
+        Output(URI uri, Kind kind)
+        {
+            super(uri, kind);
+        }
+
+        @Override public OutputStream openOutputStream()
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            outputs.put(toUri(), output);
+            return output;
+        }
+
+        @Override public InputStream openInputStream() throws FileNotFoundException
+        {
+            ByteArrayOutputStream output = outputs.get(toUri());
+            if (output == null)
+            {
+                throw new FileNotFoundException(toUri().toString());
+            }
+            return new ByteArrayInputStream(output.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.mule.tooling.apt.benchmark;
+
+import org.mule.tooling.apt.DiagramScope;
+import org.mule.tooling.apt.PlantUmlRenderer;
+import org.mule.tooling.apt.TypeModelExtractor;
+import org.mule.tooling.apt.model.Interner;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extracts one type of {@value #MEMBERS} members with {@link TypeModelExtractor} and renders it with
+ * {@link PlantUmlRenderer} into a reused block, as {@code DiagramGenerator} does for every type of a diagram. Scores
+ * are per member, so with {@code -prof gc} {@code gc.alloc.rate.norm} is the allocation per extracted and rendered
+ * member.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberRenderingBenchmark
+{
+    static final int MEMBERS = 200;
+
+    private TypeElement type;
+    private final TypeModelExtractor extractor = new TypeModelExtractor(new Interner(), DiagramScope.all());
+    private final PlantUmlRenderer renderer = new PlantUmlRenderer();
+    private final StringBuilder output = new StringBuilder(64 * 1024);
+
+    @Setup
+    public void setUp()
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, new InMemoryFileManager(compiler.getStandardFileManager(null, null, null)),
+                                                             new DiagnosticCollector<>(), Collections.singletonList("-proc:only"), null,
+                                                             SyntheticSources.generate(1, 1, MEMBERS, 1));
+        TypeCapture capture = new TypeCapture();
+        task.setProcessors(Collections.singletonList(capture));
+        task.call();
+        type = capture.type;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBERS)
+    public int render()
+    {
+        output.setLength(0);
+        renderer.renderType(extractor.extract(type), output);
+        return output.length();
+    }
+
+    @SupportedAnnotationTypes("*")
+    @SupportedSourceVersion(SourceVersion.RELEASE_8)
+    private static class TypeCapture extends AbstractProcessor
+    {
+        private TypeElement type;
+
+        @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+        {
+            if (type == null)
+            {
+                type = processingEnv.getElementUtils().getTypeElement("bench.p0.Type0");
+                // completes every member symbol while the compiler is still open
+                new TypeModelExtractor(new Interner()).extract(type);
+            }
+            return false;
+        }
+    }
+}
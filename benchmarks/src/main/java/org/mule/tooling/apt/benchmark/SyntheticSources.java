@@ -0,0 +1,85 @@
+package org.mule.tooling.apt.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Generates a source tree of {@code packages} packages with {@code typesPerPackage} classes each. Classes form
+ * inheritance chains {@code hierarchyDepth} long and declare {@code membersPerType} members, half fields and half
+ * methods.
+ */
+public class SyntheticSources
+{
+    private SyntheticSources()
+    {
+    }
+
+    public static List<JavaFileObject> generate(int packages, int typesPerPackage, int membersPerType, int hierarchyDepth)
+    {
+        List<JavaFileObject> sources = new ArrayList<>(packages * typesPerPackage);
+        for (int p = 0; p < packages; p++)
+        {
+            String packageName = "bench.p" + p;
+            for (int t = 0; t < typesPerPackage; t++)
+            {
+                sources.add(source(packageName, t, membersPerType, hierarchyDepth));
+            }
+        }
+        return sources;
+    }
+
+    private static JavaFileObject source(String packageName, int index, int membersPerType, int hierarchyDepth)
+    {
+        String typeName = "Type" + index;
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(packageName).append(";\n\n");
+        code.append("public class ").append(typeName);
+        if (hierarchyDepth > 1 && index % hierarchyDepth != 0)
+        {
+            code.append(" extends Type").append(index - 1);
+        }
+        else
+        {
+            code.append(" implements java.io.Serializable, Comparable<").append(typeName).append(">");
+        }
+        code.append("\n{\n");
+        for (int m = 0; m < membersPerType; m++)
+        {
+            if (m % 2 == 0)
+            {
+                code.append("    protected java.util.List<String> field").append(index).append('_').append(m).append(";\n");
+            }
+            else
+            {
+                code.append("    public String method").append(index).append('_').append(m)
+                    .append("(int count, java.util.Map<String, Integer> values) { return null; }\n");
+            }
+        }
+        if (hierarchyDepth <= 1 || index % hierarchyDepth == 0)
+        {
+            code.append("    public int compareTo(").append(typeName).append(" other) { return 0; }\n");
+        }
+        code.append("}\n");
+        return new Source(packageName.replace('.', '/') + "/" + typeName + ".java", code.toString());
+    }
+
+    private static class Source extends SimpleJavaFileObject
+    {
+        private final String code;
+
+        Source(String path, String code)
+        {
+            super(URI.create("memory:///" + path), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override public CharSequence getCharContent(boolean ignoreEncodingErrors)
+        {
+            return code;
+        }
+    }
+}
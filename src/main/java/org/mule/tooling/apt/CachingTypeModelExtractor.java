@@ -0,0 +1,48 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.TypeModel;
+
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Looks top level source types up in a {@link ModelCache} before extracting them, and caches what it extracts when
+ * every type it refers to resolves. Nested types are part of their top level type's model; types without source are
+ * always extracted.
+ */
+public class CachingTypeModelExtractor extends TypeModelExtractor
+{
+    private final ModelCache cache;
+    private final SourceTypeFingerprint fingerprint;
+
+    public CachingTypeModelExtractor(Interner interner, DiagramScope scope, ModelCache cache, SourceTypeFingerprint fingerprint)
+    {
+        super(interner, scope);
+        this.cache = cache;
+        this.fingerprint = fingerprint;
+    }
+
+    @Override public TypeModel extract(TypeElement typeElement)
+    {
+        if (typeElement.getNestingKind() != NestingKind.TOP_LEVEL)
+        {
+            return super.extract(typeElement);
+        }
+        byte[] key = fingerprint.of(typeElement);
+        if (key == null)
+        {
+            return super.extract(typeElement);
+        }
+        TypeModel model = cache.get(key);
+        if (model == null)
+        {
+            model = super.extract(typeElement);
+            if (SourceTypeFingerprint.isResolved(typeElement))
+            {
+                cache.put(key, model);
+            }
+        }
+        return model;
+    }
+}
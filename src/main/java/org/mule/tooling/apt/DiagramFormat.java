@@ -0,0 +1,35 @@
+package org.mule.tooling.apt;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The output formats of package diagrams, each written to its own resource next to the others: every
+ * {@link DiagramRendererFactory} service the processor's class loader sees. The built-in ones are {@value #PLANTUML},
+ * the default, as PlantUML wrapped in an AsciiDoc block, {@code mermaid}, {@code dot} for Graphviz, and {@code json},
+ * the model itself, members included, for tools that do their own layout.
+ */
+public final class DiagramFormat
+{
+    public static final String PLANTUML = "plantuml";
+
+    private DiagramFormat()
+    {
+    }
+
+    /**
+     * @return the formats by lower case name, in the order their services are found; a name found twice keeps its
+     *         first factory
+     */
+    public static Map<String, DiagramRendererFactory> load(ClassLoader classLoader)
+    {
+        Map<String, DiagramRendererFactory> formats = new LinkedHashMap<>();
+        for (DiagramRendererFactory factory : ServiceLoader.load(DiagramRendererFactory.class, classLoader))
+        {
+            formats.putIfAbsent(factory.getName().toLowerCase(Locale.ROOT), factory);
+        }
+        return formats;
+    }
+}
@@ -2,173 +2,777 @@ package org.mule.tooling.apt;
 
 import org.mule.tooling.apt.model.ClassDiagram;
 import org.mule.tooling.apt.model.CreationContext;
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.ElementOrder;
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.RelationshipGraph;
+import org.mule.tooling.apt.model.TypeModel;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
-import javax.lang.model.element.ElementVisitor;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.type.DeclaredType;
-import javax.lang.model.type.NoType;
-import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
-import javax.lang.model.util.TypeKindVisitor8;
 import javax.tools.Diagnostic;
 import javax.tools.StandardLocation;
 
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 @SupportedAnnotationTypes("*")
+@SupportedOptions({DiagramOptions.THREADS, DiagramOptions.INCREMENTAL, DiagramOptions.METRICS, DiagramOptions.EXTERNAL_TYPES,
+                    DiagramOptions.WHOLE_PROGRAM, DiagramOptions.CACHE_DIR, DiagramOptions.CACHE_SIZE, DiagramOptions.INCLUDES,
+                    DiagramOptions.EXCLUDES, DiagramOptions.VISIBILITY, DiagramOptions.MEMBERS, DiagramOptions.FORMATS,
+                    DiagramOptions.RELATIONS, DiagramOptions.MAX_NODES, DiagramOptions.MAX_EDGES, DiagramOptions.FLUSH_TYPES})
 public class DiagramGenerator extends AbstractProcessor
 {
+    public static final String METRICS_RESOURCE = "META-INF/diagram-generator/metrics.json";
+    public static final String RELATIONSHIP_GRAPH_NAME = "project-dependency-graph";
 
+    private HierarchyIndex hierarchyIndex;
+    private DiagramOptions options;
+    private DiagramManifest manifest;
+    private PackageFingerprint fingerprint;
+    private ProcessorMetrics metrics;
+    private ModelCache modelCache;
+    private TypeModelExtractor extractor;
+    private List<DiagramRenderer> renderers;
+    private DiagramPartitioner partitioner;
+    private TypeBlockCache typeBlocks;
+    private WholeProgramDiagram wholeProgram;
+    private RelationshipGraph.Builder relationships;
+    private final Map<String, Set<String>> pending = new HashMap<>();
+    private final Set<String> renderedPackages = new HashSet<>();
+    private int pendingTypes;
+    private final ModelCache sharedModelCache;
+    private final Listener listener;
+
+    public DiagramGenerator()
+    {
+        this(null, null);
+    }
+
+    /**
+     * For tools that run javac in-process. Source types are looked up in and added to {@code modelCache}, if any,
+     * which the processor neither opens nor stores, and {@code listener}, if any, is told on the javac thread what
+     * is extracted and which files each package diagram has.
+     */
+    public DiagramGenerator(ModelCache modelCache, Listener listener)
+    {
+        this.sharedModelCache = modelCache;
+        this.listener = listener;
+    }
+
+    /**
+     * What a {@link DiagramGenerator} running in-process reports to the tool that runs it.
+     */
+    public interface Listener
+    {
+        /**
+         * Called with every extracted package model, whether its diagram is then written or up to date.
+         */
+        default void extracted(DiagramModel diagram)
+        {
+        }
+
+        /**
+         * Called with the files of every package diagram, index and parts of a split diagram included, whether
+         * written by this compilation or left up to date by the previous one.
+         *
+         * @param fileNames the file names, in the package's directory of the class output
+         */
+        default void diagramFiles(String packageName, List<String> fileNames)
+        {
+        }
+    }
+
+    @Override public synchronized void init(ProcessingEnvironment processingEnv)
+    {
+        super.init(processingEnv);
+        hierarchyIndex = new HierarchyIndex(processingEnv);
+        options = new DiagramOptions(processingEnv.getOptions(), processingEnv.getMessager());
+        metrics = ProcessorMetrics.create(options.isMetrics());
+        extractor = createExtractor(new Interner());
+        renderers = new ArrayList<>();
+        for (DiagramRendererFactory format : options.getFormats())
+        {
+            renderers.add(format.createRenderer(options.getScope().getMembers() != DiagramScope.Members.SHOWN));
+        }
+        partitioner = new DiagramPartitioner(options.getMaxNodes(), options.getMaxEdges(), metrics);
+        typeBlocks = new TypeBlockCache(extractor, options.isExternalTypeStubs());
+        if (options.isWholeProgram())
+        {
+            if (options.getFormats().size() != 1 || !DiagramFormat.PLANTUML.equals(options.getFormats().get(0).getName()))
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, DiagramOptions.WHOLE_PROGRAM + " is only written as PlantUML");
+            }
+            if (options.isRelations())
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, DiagramOptions.WHOLE_PROGRAM + " only draws inheritance");
+            }
+            try
+            {
+                wholeProgram = new WholeProgramDiagram(extractor, hierarchyIndex, metrics, options.getScope(), options.isExternalTypeStubs());
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+        else
+        {
+            if (options.isIncremental())
+            {
+                manifest = DiagramManifest.load(processingEnv.getFiler());
+                fingerprint = new PackageFingerprint(options.getOutputSignature());
+            }
+            if (options.isRelations())
+            {
+                relationships = RelationshipGraph.builder();
+            }
+        }
+    }
+
+    private TypeModelExtractor createExtractor(Interner interner)
+    {
+        if (options.getCacheDir() == null && sharedModelCache == null)
+        {
+            return new TypeModelExtractor(interner, options.getScope());
+        }
+        SourceTypeFingerprint typeFingerprint;
+        try
+        {
+            typeFingerprint = new SourceTypeFingerprint(processingEnv, options.getScope().getSignature());
+        }
+        catch (IllegalArgumentException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, DiagramOptions.CACHE_DIR + " needs javac, extracting every type");
+            return new TypeModelExtractor(interner, options.getScope());
+        }
+        if (sharedModelCache != null)
+        {
+            return new CachingTypeModelExtractor(interner, options.getScope(), sharedModelCache, typeFingerprint);
+        }
+        modelCache = ModelCache.open(options.getCacheDir(), options.getCacheMaxBytes(), interner, metrics);
+        return new CachingTypeModelExtractor(interner, options.getScope(), modelCache, typeFingerprint);
+    }
+
+    HierarchyIndex getHierarchyIndex()
+    {
+        return hierarchyIndex;
+    }
 
     @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
     {
-        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Generating diagram");
-        CreationContext context = new CreationContext();
+        hierarchyIndex.newRound();
         if (roundEnv.processingOver())
         {
+            renderPending();
+            writeWholeProgram();
+            writeRelationshipGraph();
+            storeManifest();
+            storeModelCache();
+            reportMetrics();
             return false;
         }
-        Elements elements = processingEnv.getElementUtils();
+        if (wholeProgram != null)
+        {
+            addToWholeProgram(roundEnv);
+            return false;
+        }
+        collect(roundEnv);
+        if (options.getFlushTypes() > 0 && pendingTypes >= options.getFlushTypes())
+        {
+            renderPending();
+        }
+        return false;
+    }
 
-        roundEnv.getRootElements().forEach(element ->
+    /**
+     * Keeps the names of the round's source types, by package, until they are rendered. Names rather than elements
+     * are kept, as javac 8 enters every round in a new symbol table.
+     */
+    private void collect(RoundEnvironment roundEnv)
+    {
+        Elements elements = processingEnv.getElementUtils();
+        long collectStart = metrics.start();
+        for (Element element : roundEnv.getRootElements())
         {
-            ClassDiagram driagram = context.getOrCreate(elements.getPackageOf(element));
+            if (element instanceof TypeElement && !options.getScope().includes(((TypeElement) element).getQualifiedName().toString()))
+            {
+                continue;
+            }
+            String packageName = elements.getPackageOf(element).getQualifiedName().toString();
+            if (renderedPackages.contains(packageName))
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Package " + packageName + " was already rendered, leaving " + element + " out of its diagram");
+                continue;
+            }
+            Set<String> types = pending.computeIfAbsent(packageName, x -> new HashSet<>());
             if (element instanceof TypeElement)
             {
-                driagram.getTypes().add((TypeElement) element);
+                if (types.add(((TypeElement) element).getQualifiedName().toString()))
+                {
+                    pendingTypes++;
+                }
             }
             else
             {
                 processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Not a Type " + element);
             }
-        });
-        context.getPackages().forEach((x, y) ->
-        {
-            writeDiagram(x, y);
-        });
-
+        }
+        metrics.stop(ProcessorMetrics.Phase.COLLECT, collectStart);
+    }
 
-        return false;
+    /**
+     * Renders every package collected since the last call, each once with the types of all the rounds that
+     * contributed to it.
+     */
+    private void renderPending()
+    {
+        if (pending.isEmpty())
+        {
+            return;
+        }
+        Elements elements = processingEnv.getElementUtils();
+        long collectStart = metrics.start();
+        CreationContext context = new CreationContext();
+        for (Map.Entry<String, Set<String>> entry : pending.entrySet())
+        {
+            ClassDiagram driagram = context.getOrCreate(elements.getPackageElement(entry.getKey()));
+            for (String typeName : entry.getValue())
+            {
+                driagram.addType(elements.getTypeElement(typeName));
+            }
+            renderedPackages.add(entry.getKey());
+        }
+        pending.clear();
+        pendingTypes = 0;
+        List<PackageElement> packages = context.getSortedPackages();
+        if (relationships != null)
+        {
+            registerTypes(packages, context);
+        }
+        metrics.stop(ProcessorMetrics.Phase.COLLECT, collectStart);
+        if (options.getThreads() > 1 && packages.size() > 1)
+        {
+            renderInParallel(packages, context);
+        }
+        else
+        {
+            for (PackageElement x : packages)
+            {
+                DiagramModel diagram = extractDiagram(x, context.getOrCreate(x));
+                if (!isUpToDate(x, diagram))
+                {
+                    writeDiagram(x, context.getOrCreate(x), diagram);
+                }
+            }
+        }
     }
 
-    private boolean isObject(TypeMirror typeMirror)
+    /**
+     * Records the package fingerprint and tells whether the diagram left by the previous build can be kept; always
+     * {@code false} when the build is not incremental.
+     */
+    private boolean isUpToDate(PackageElement x, DiagramModel diagram)
     {
-        return processingEnv.getTypeUtils().isSameType(typeMirror, processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType());
+        if (manifest == null)
+        {
+            return false;
+        }
+        String packageName = x.getQualifiedName().toString();
+        String packageFingerprint = fingerprint.of(diagram);
+        manifest.put(packageName, packageFingerprint);
+        if (!manifest.isUpToDate(packageName, packageFingerprint))
+        {
+            return false;
+        }
+        int parts = manifest.getParts(packageName);
+        for (int part = 0; part <= parts; part++)
+        {
+            String fileName = part == 0 ? diagramName(x) : diagramName(x) + "-" + part;
+            for (DiagramRenderer renderer : renderers)
+            {
+                try
+                {
+                    // left by the previous build
+                    processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, x.getQualifiedName(), fileName + renderer.getExtension()).openInputStream().close();
+                }
+                catch (IOException e)
+                {
+                    return false;
+                }
+            }
+        }
+        manifest.putParts(packageName, parts);
+        listDiagramFiles(packageName, diagramName(x), parts + 1);
+        metrics.increment(ProcessorMetrics.Counter.DIAGRAMS_SKIPPED);
+        return true;
     }
 
-    private void writeDiagram(PackageElement x, ClassDiagram y)
+    /**
+     * Tells the listener the files of a package diagram written as {@code diagrams} diagrams: the index and its
+     * parts when split, in every format.
+     */
+    private void listDiagramFiles(String packageName, String diagramName, int diagrams)
     {
-        String imageFormat = "svg";
-        boolean hideMembers = true;
-        Filer filer = processingEnv.getFiler();
-        String diagramName = x.getQualifiedName().toString().replace(".", "-") + "-class-diagram";
-        try (Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, x.getQualifiedName(), diagramName + ".adoc").openWriter())
+        if (listener == null)
         {
-            Set<String> processedHierarchyEntries = new HashSet<>();
-            ElementVisitor<String, StringBuilder> visitor = new DefaultElementVisitor(processingEnv);
-            StringBuilder classList = new StringBuilder();
-            for (TypeElement typeElement : y.getTypes())
+            return;
+        }
+        List<String> fileNames = new ArrayList<>(diagrams * renderers.size());
+        for (int part = 0; part < diagrams; part++)
+        {
+            for (DiagramRenderer renderer : renderers)
             {
-                typeElement.accept(visitor, classList);
+                fileNames.add((part == 0 ? diagramName : diagramName + "-" + part) + renderer.getExtension());
             }
-            for (TypeElement typeElement : y.getTypes())
+        }
+        listener.diagramFiles(packageName, fileNames);
+    }
+
+    /**
+     * Records in the manifest how many parts the diagram was split into, and empties the parts the previous build
+     * recorded beyond them, such as all of them once the diagram fits its budget again. Outputs only ever go through
+     * the {@link Filer}, which cannot delete them, so stale parts are rewritten as empty resources instead.
+     *
+     * @param diagramKey the package name, or the name of a diagram of the whole compilation
+     */
+    private void written(String diagramKey, CharSequence packageName, String diagramName, int diagrams, Element... originatingElements)
+    {
+        if (manifest == null)
+        {
+            return;
+        }
+        int parts = diagrams > 1 ? diagrams - 1 : 0;
+        int previousParts = manifest.getParts(diagramKey);
+        manifest.putParts(diagramKey, parts);
+        for (int part = parts + 1; part <= previousParts; part++)
+        {
+            for (DiagramRenderer renderer : renderers)
             {
-                if (ElementKind.ENUM.equals(typeElement.getKind()))
+                try
                 {
-                    continue;
+                    processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, packageName, diagramName + "-" + part + renderer.getExtension(),
+                                                            originatingElements).openOutputStream().close();
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
                 }
-                addHierarchy(visitor, classList, typeElement, processedHierarchyEntries);
+            }
+        }
+    }
+
+    private void storeManifest()
+    {
+        if (manifest == null)
+        {
+            return;
+        }
+        try
+        {
+            manifest.store(processingEnv.getFiler());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            manifest = null;
+        }
+    }
 
+    /**
+     * A cache that cannot be written costs the next build time, not correctness, so failures only warn.
+     */
+    private void storeModelCache()
+    {
+        if (modelCache == null)
+        {
+            return;
+        }
+        try
+        {
+            modelCache.store();
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Could not store the diagram model cache: " + e);
+        }
+        finally
+        {
+            modelCache = null;
+        }
+    }
+
+    /**
+     * Adds the types of the round in qualified name order, as javac reports them in the order its sources were
+     * given.
+     */
+    private void addToWholeProgram(RoundEnvironment roundEnv)
+    {
+        List<TypeElement> types = new ArrayList<>();
+        for (Element element : roundEnv.getRootElements())
+        {
+            if (element instanceof TypeElement)
+            {
+                if (options.getScope().includes(((TypeElement) element).getQualifiedName().toString()))
+                {
+                    types.add((TypeElement) element);
+                }
             }
-            String diagramContent = "[plantuml, " + diagramName + ", " + imageFormat + "]\n" +
-                                    "....\n" +
-                                    "package " + x.getQualifiedName().toString() + " {\n" +
+            else
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Not a Type " + element);
+            }
+        }
+        try
+        {
+            for (TypeElement typeElement : ElementOrder.byQualifiedName(types))
+            {
+                wholeProgram.add(typeElement);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
 
-                                    classList.toString() + "\n" +
-                                    "}\n" +
-                                    ((hideMembers) ? "hide members\n" : "")
-                                    +
-                                    "....";
-            writer.write(diagramContent);
+    private void writeWholeProgram()
+    {
+        if (wholeProgram == null)
+        {
+            return;
+        }
+        try (WholeProgramDiagram diagram = wholeProgram)
+        {
+            diagram.write(processingEnv.getFiler());
         }
         catch (IOException e)
         {
             throw new RuntimeException(e);
         }
+        finally
+        {
+            wholeProgram = null;
+        }
     }
 
-    private void addHierarchy(ElementVisitor<String, StringBuilder> visitor, StringBuilder classList, TypeElement typeElement, Set<String> processedHierarchyEntries)
+    private void reportMetrics()
     {
-        TypeMirror superclass = typeElement.getSuperclass();
-        if (superclass != null && !isObject(superclass) && !(superclass instanceof NoType))
+        if (!metrics.isEnabled())
+        {
+            return;
+        }
+        try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", METRICS_RESOURCE).openWriter())
         {
-            String parent = superclass.toString();
-            if (containsGenerics(superclass))
+            writer.write(metrics.toJson(hierarchyIndex, typeBlocks));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, metrics.toSummary());
+    }
+
+    private void renderInParallel(List<PackageElement> packages, CreationContext context)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.getThreads(), packages.size()));
+        try
+        {
+            List<PackageElement> changed = new ArrayList<>(packages.size());
+            List<Future<Map<String, String>>> rendered = new ArrayList<>(packages.size());
+            for (PackageElement x : packages)
             {
-                parent = processingEnv.getTypeUtils().asElement(superclass).toString();
+                DiagramModel diagram = extractDiagram(x, context.getOrCreate(x));
+                if (isUpToDate(x, diagram))
+                {
+                    continue;
+                }
+                changed.add(x);
+                rendered.add(executor.submit(() ->
+                {
+                    Map<String, String> contents = new LinkedHashMap<>();
+                    for (DiagramModel part : partitioner.partition(diagram))
+                    {
+                        for (DiagramRenderer renderer : renderers)
+                        {
+                            StringWriter content = new StringWriter();
+                            try (DiagramWriter writer = new DiagramWriter(content))
+                            {
+                                renderer.render(part, writer);
+                            }
+                            contents.put(part.getName() + renderer.getExtension(), content.toString());
+                        }
+                    }
+                    return contents;
+                }));
             }
-            String hierarchyLine = parent + "<|--" + typeElement.getQualifiedName();
-            if (!processedHierarchyEntries.contains(hierarchyLine))
+            for (int i = 0; i < changed.size(); i++)
             {
-                classList.append(hierarchyLine + "\n");
-                processedHierarchyEntries.add(hierarchyLine);
+                PackageElement x = changed.get(i);
+                Map<String, String> contents = rendered.get(i).get();
+                long start = metrics.start();
+                for (Map.Entry<String, String> content : contents.entrySet())
+                {
+                    try (Writer writer = createDiagramResource(x, context.getOrCreate(x), content.getKey()))
+                    {
+                        writer.write(content.getValue());
+                    }
+                }
+                written(x.getQualifiedName().toString(), x.getQualifiedName(), diagramName(x), contents.size() / renderers.size(),
+                        context.getOrCreate(x).getSortedTypes().toArray(new Element[0]));
+                listDiagramFiles(x.getQualifiedName().toString(), diagramName(x), contents.size() / renderers.size());
+                metrics.stop(ProcessorMetrics.Phase.WRITE, start);
             }
-            Element superClassType = processingEnv.getTypeUtils().asElement(superclass);
-            if (superClassType instanceof TypeElement)
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts the types of the package, plus the interfaces and edges their hierarchy pulls in. This is where
+     * compiler symbols are read, so it runs on the javac thread; the model is then rendered on any thread. Types
+     * are taken in name order, so the model and its fingerprint do not change from one build to the next.
+     */
+    private DiagramModel extractDiagram(PackageElement x, ClassDiagram y)
+    {
+        DiagramModel.Builder diagram = DiagramModel.builder(diagramName(x), x.getQualifiedName().toString());
+        List<TypeElement> types = y.getSortedTypes();
+        long start = metrics.start();
+        for (TypeElement typeElement : types)
+        {
+            TypeModel type = extractor.extract(typeElement);
+            diagram.addType(type);
+            if (relationships != null)
             {
-                addHierarchy(visitor, classList, (TypeElement) superClassType, processedHierarchyEntries);
+                addRelations(diagram, type);
             }
         }
-        if (!typeElement.getInterfaces().isEmpty())
+        metrics.stop(ProcessorMetrics.Phase.VISIT, start);
+        start = metrics.start();
+        for (TypeElement typeElement : types)
         {
-            typeElement.getInterfaces().forEach(x ->
+            if (ElementKind.ENUM.equals(typeElement.getKind()))
+            {
+                continue;
+            }
+            HierarchyIndex.Entry hierarchy = hierarchyIndex.get(typeElement);
+            for (TypeElement interfaceElement : hierarchyIndex.getInterfaces(hierarchy))
+            {
+                String interfaceName = interfaceElement.getQualifiedName().toString();
+                if (!diagram.containsType(interfaceName) && !options.getScope().excludes(interfaceName))
+                {
+                    diagram.addType(y.getTypes().contains(interfaceElement) ? extractor.extract(interfaceElement) : typeBlocks.get(interfaceElement));
+                }
+            }
+            for (int i = 0; i < hierarchy.getEdgeCount(); i++)
             {
-                Element interfaceElement = processingEnv.getTypeUtils().asElement(x);
-                interfaceElement.accept(visitor, classList);
-                String parent = x.toString();
-                if (containsGenerics(x))
+                if (options.getScope().includesEdge(hierarchy.getEdgeParent(i), hierarchy.getEdgeChild(i)))
                 {
-                    parent = processingEnv.getTypeUtils().asElement(x).toString();
+                    diagram.addEdge(hierarchy.getEdgeParent(i), hierarchy.getEdgeChild(i));
                 }
-                String hierarchyLine = parent + "<|--" + typeElement.getQualifiedName();
-                if (!processedHierarchyEntries.contains(hierarchyLine))
+            }
+        }
+        metrics.stop(ProcessorMetrics.Phase.HIERARCHY, start);
+        DiagramModel model = diagram.build();
+        metrics.addDiagram(model);
+        if (listener != null)
+        {
+            listener.extracted(model);
+        }
+        return model;
+    }
+
+    /**
+     * Registers every source type of the round, nested ones included, before any package is extracted, so the
+     * members of each type are resolved against all of them.
+     */
+    private void registerTypes(List<PackageElement> packages, CreationContext context)
+    {
+        for (PackageElement x : packages)
+        {
+            for (TypeElement typeElement : context.getOrCreate(x).getSortedTypes())
+            {
+                registerType(typeElement);
+            }
+        }
+    }
+
+    private void registerType(TypeElement typeElement)
+    {
+        relationships.register(typeElement.getQualifiedName().toString());
+        for (Element enclosed : typeElement.getEnclosedElements())
+        {
+            if (TypeModelExtractor.isType(enclosed))
+            {
+                registerType((TypeElement) enclosed);
+            }
+        }
+    }
+
+    /**
+     * Adds the type to the project graph and draws the associations and dependencies it gets there.
+     */
+    private void addRelations(DiagramModel.Builder diagram, TypeModel type)
+    {
+        int first = relationships.getEdgeCount();
+        relationships.addType(type);
+        for (int i = first; i < relationships.getEdgeCount(); i++)
+        {
+            String source = relationships.getName(relationships.getEdgeSource(i));
+            String target = relationships.getName(relationships.getEdgeTarget(i));
+            if (relationships.getEdgeRelation(i) != Relation.INHERITANCE && options.getScope().includesEdge(target, source))
+            {
+                diagram.addRelation(source, target, relationships.getEdgeRelation(i));
+            }
+        }
+    }
+
+    /**
+     * Writes the graph of every source type of the compilation, in each format, once all rounds are over; split
+     * like package diagrams when over budget.
+     */
+    private void writeRelationshipGraph()
+    {
+        if (relationships == null)
+        {
+            return;
+        }
+        DiagramModel graph = relationships.build().toDiagram(RELATIONSHIP_GRAPH_NAME);
+        relationships = null;
+        List<DiagramModel> parts = partitioner.partition(graph);
+        for (DiagramModel part : parts)
+        {
+            for (DiagramRenderer renderer : renderers)
+            {
+                try (DiagramWriter writer = new DiagramWriter(new OutputStreamWriter(processingEnv.getFiler()
+                                                                                                  .createResource(StandardLocation.CLASS_OUTPUT, "", part.getName() + renderer.getExtension())
+                                                                                                  .openOutputStream(), StandardCharsets.UTF_8), metrics))
                 {
-                    classList.append(hierarchyLine + "\n");
-                    processedHierarchyEntries.add(hierarchyLine);
+                    renderer.render(part, writer);
                 }
-                if (interfaceElement instanceof TypeElement)
+                catch (IOException e)
                 {
-                    addHierarchy(visitor, classList, (TypeElement) interfaceElement, processedHierarchyEntries);
+                    throw new RuntimeException(e);
                 }
-            });
+            }
         }
+        written(RELATIONSHIP_GRAPH_NAME, "", RELATIONSHIP_GRAPH_NAME, parts.size());
     }
 
-    private boolean containsGenerics(TypeMirror superclass)
+    private static String diagramName(PackageElement x)
     {
-        Boolean hasGenerics = superclass.accept(new TypeKindVisitor8<Boolean, Object>(false)
+        return PlantUmlRenderer.diagramName(x.getQualifiedName().toString());
+    }
+
+    /**
+     * The diagram aggregates every type of the package, so all of them are declared as originating elements; this
+     * is what lets Gradle treat the processor as aggregating and keep Java compilation incremental.
+     */
+    private Writer createDiagramResource(PackageElement x, ClassDiagram y, String fileName) throws IOException
+    {
+        Filer filer = processingEnv.getFiler();
+        Element[] originatingElements = y.getSortedTypes().toArray(new Element[0]);
+        OutputStream output = filer.createResource(StandardLocation.CLASS_OUTPUT, x.getQualifiedName(), fileName, originatingElements).openOutputStream();
+        metrics.increment(ProcessorMetrics.Counter.DIAGRAMS_WRITTEN);
+        if (metrics.isEnabled())
         {
-            @Override
-            public Boolean visitDeclared(DeclaredType t, Object p)
+            output = new CountingOutputStream(output, metrics);
+        }
+        return new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Renders the one extracted model in every format, each streamed to its own resource; a model over the
+     * diagram budget is written as an index and its parts.
+     */
+    private void writeDiagram(PackageElement x, ClassDiagram y, DiagramModel diagram)
+    {
+        List<DiagramModel> parts = partitioner.partition(diagram);
+        for (DiagramModel part : parts)
+        {
+            for (DiagramRenderer renderer : renderers)
             {
-                return !t.getTypeArguments().isEmpty();
+                try (DiagramWriter writer = new DiagramWriter(createDiagramResource(x, y, part.getName() + renderer.getExtension()), metrics))
+                {
+                    renderer.render(part, writer);
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
             }
-        }, null);
-        return hasGenerics;
+        }
+        written(x.getQualifiedName().toString(), x.getQualifiedName(), diagramName(x), parts.size(), y.getSortedTypes().toArray(new Element[0]));
+        listDiagramFiles(x.getQualifiedName().toString(), diagramName(x), parts.size());
     }
 
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private final ProcessorMetrics metrics;
+
+        CountingOutputStream(OutputStream out, ProcessorMetrics metrics)
+        {
+            super(out);
+            this.metrics = metrics;
+        }
+
+        @Override public void write(int b) throws IOException
+        {
+            out.write(b);
+            metrics.increment(ProcessorMetrics.Counter.BYTES_WRITTEN);
+        }
 
+        @Override public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            metrics.add(ProcessorMetrics.Counter.BYTES_WRITTEN, len);
+        }
+    }
 }
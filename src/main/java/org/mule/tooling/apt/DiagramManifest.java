@@ -0,0 +1,110 @@
+package org.mule.tooling.apt;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Filer;
+import javax.tools.StandardLocation;
+
+/**
+ * Package fingerprints of the diagrams written by a previous compilation, stored in {@code CLASS_OUTPUT} so an
+ * incremental build can leave unchanged diagrams in place. A diagram split into parts is recorded as
+ * {@code fingerprint,parts}, so a missing part is written again.
+ */
+public class DiagramManifest
+{
+    public static final String RESOURCE = "META-INF/diagram-generator/manifest.properties";
+
+    private final Properties previous = new Properties();
+    private final Properties current = new Properties();
+    private final Map<String, Integer> currentParts = new TreeMap<>();
+
+    public static DiagramManifest load(Filer filer)
+    {
+        DiagramManifest manifest = new DiagramManifest();
+        try (InputStream input = filer.getResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE).openInputStream())
+        {
+            manifest.previous.load(input);
+        }
+        catch (FileNotFoundException | NoSuchFileException e)
+        {
+            // first build, every diagram is generated
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            manifest.previous.clear();
+        }
+        return manifest;
+    }
+
+    public boolean isUpToDate(String packageName, String fingerprint)
+    {
+        String value = previous.getProperty(packageName);
+        return value != null && fingerprint.equals(value.substring(0, separator(value)));
+    }
+
+    /**
+     * @return the number of parts the previous diagram of the package was split into, {@code 0} when it was not
+     */
+    public int getParts(String packageName)
+    {
+        String value = previous.getProperty(packageName);
+        if (value == null || separator(value) == value.length())
+        {
+            return 0;
+        }
+        try
+        {
+            return Integer.parseInt(value.substring(separator(value) + 1));
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    private static int separator(String value)
+    {
+        int separator = value.indexOf(',');
+        return separator < 0 ? value.length() : separator;
+    }
+
+    public void put(String packageName, String fingerprint)
+    {
+        current.setProperty(packageName, fingerprint);
+    }
+
+    /**
+     * Records the number of parts a diagram written in this build is split into, {@code 0} when it is not.
+     */
+    public void putParts(String diagramKey, int parts)
+    {
+        currentParts.put(diagramKey, parts);
+    }
+
+    public void store(Filer filer) throws IOException
+    {
+        Map<String, String> merged = new TreeMap<>();
+        previous.stringPropertyNames().forEach(x -> merged.put(x, previous.getProperty(x)));
+        current.stringPropertyNames().forEach(x -> merged.put(x, current.getProperty(x)));
+        for (Map.Entry<String, Integer> parts : currentParts.entrySet())
+        {
+            String value = merged.getOrDefault(parts.getKey(), "");
+            value = value.substring(0, separator(value));
+            merged.put(parts.getKey(), parts.getValue() > 0 ? value + "," + parts.getValue() : value);
+        }
+        try (Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE).openWriter())
+        {
+            for (Map.Entry<String, String> entry : merged.entrySet())
+            {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+}
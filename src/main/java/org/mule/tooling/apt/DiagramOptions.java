@@ -0,0 +1,402 @@
+package org.mule.tooling.apt;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+/**
+ * Processor options, passed to javac as {@code -A<name>=<value>}.
+ */
+public class DiagramOptions
+{
+    /**
+     * Number of threads rendering package diagrams; {@code 1} renders on the javac thread, {@code 0} uses one
+     * thread per available processor.
+     */
+    public static final String THREADS = "diagram.threads";
+
+    /**
+     * Whether diagrams of packages whose fingerprint matches the previous build's manifest are left untouched,
+     * {@code true} by default.
+     */
+    public static final String INCREMENTAL = "diagram.incremental";
+
+    /**
+     * Whether phase timings and counters are collected and reported, {@code false} by default.
+     */
+    public static final String METRICS = "diagram.metrics";
+
+    /**
+     * How types that only appear through the hierarchy of a package's types are rendered: {@code full} (default)
+     * with their members, or {@code stub} as empty blocks.
+     */
+    public static final String EXTERNAL_TYPES = "diagram.externalTypes";
+
+    /**
+     * Whether one diagram of the whole compilation is generated instead of one per package, {@code false} by
+     * default. Type blocks are spilled to temporary files as they are rendered, so heap usage does not grow with
+     * the size of the program.
+     */
+    public static final String WHOLE_PROGRAM = "diagram.wholeProgram";
+
+    /**
+     * Directory of the {@link ModelCache} shared by builds, so unchanged source types are not extracted again; no
+     * cache is used by default.
+     * <p>
+     * Source files are located through javac's tree API, which needs the processing environment javac itself
+     * creates. Build tools that hand processors a wrapped environment, such as Gradle with incremental annotation
+     * processing, hide it: the cache is then off, with a warning, and every type is extracted.
+     */
+    public static final String CACHE_DIR = "diagram.cacheDir";
+
+    /**
+     * Size cap of the model cache file in megabytes, {@value #DEFAULT_CACHE_SIZE} by default. Least recently used
+     * models are evicted past it.
+     */
+    public static final String CACHE_SIZE = "diagram.cacheSize";
+
+    static final int DEFAULT_CACHE_SIZE = 64;
+
+    /**
+     * Comma separated {@link DiagramScope} patterns of the source types that get diagrams, all of them by default.
+     */
+    public static final String INCLUDES = "diagram.includes";
+
+    /**
+     * Comma separated {@link DiagramScope} patterns of the types left out of every diagram, with their edges.
+     */
+    public static final String EXCLUDES = "diagram.excludes";
+
+    /**
+     * Lowest visibility of the rendered members: {@code private} (default), {@code package}, {@code protected} or
+     * {@code public}.
+     */
+    public static final String VISIBILITY = "diagram.visibility";
+
+    /**
+     * {@code hidden} (default) renders members and has PlantUML hide them, {@code shown} lets PlantUML show them and
+     * {@code none} leaves them out without reading them.
+     */
+    public static final String MEMBERS = "diagram.members";
+
+    /**
+     * Comma separated {@link DiagramFormat}s each package diagram is written in, {@code plantuml} by default. All of
+     * them are rendered from one extraction of the package. Other formats are added as
+     * {@link DiagramRendererFactory} services.
+     */
+    public static final String FORMATS = "diagram.formats";
+
+    /**
+     * Whether diagrams also draw associations, from field types, and dependencies, from method signatures, between
+     * the source types of the compilation, and a whole project graph is written next to the package diagrams;
+     * {@code false} by default.
+     */
+    public static final String RELATIONS = "diagram.relations";
+
+    /**
+     * Nodes a diagram may have before it is split into parts linked from an index diagram, see
+     * {@link DiagramPartitioner}; no limit by default.
+     */
+    public static final String MAX_NODES = "diagram.maxNodes";
+
+    /**
+     * Edges a diagram may have before it is split into parts linked from an index diagram; no limit by default.
+     */
+    public static final String MAX_EDGES = "diagram.maxEdges";
+
+    /**
+     * Source types collected over the rounds past which their packages are rendered at the end of the round rather
+     * than in the final one, to free their models early; by default everything is rendered once, in the final
+     * round. Types generated in a later round into a package already rendered are left out of its diagram.
+     */
+    public static final String FLUSH_TYPES = "diagram.flushTypes";
+
+    private static final Messager STANDARD_ERROR = new Messager()
+    {
+        @Override public void printMessage(Diagnostic.Kind kind, CharSequence message)
+        {
+            System.err.println(kind.name().toLowerCase(Locale.ROOT) + ": " + message);
+        }
+
+        @Override public void printMessage(Diagnostic.Kind kind, CharSequence message, Element element)
+        {
+            printMessage(kind, message);
+        }
+
+        @Override public void printMessage(Diagnostic.Kind kind, CharSequence message, Element element, AnnotationMirror annotation)
+        {
+            printMessage(kind, message);
+        }
+
+        @Override public void printMessage(Diagnostic.Kind kind, CharSequence message, Element element, AnnotationMirror annotation, AnnotationValue value)
+        {
+            printMessage(kind, message);
+        }
+    };
+
+    private final int threads;
+    private final boolean incremental;
+    private final boolean metrics;
+    private final boolean externalTypeStubs;
+    private final boolean wholeProgram;
+    private final Path cacheDir;
+    private final long cacheMaxBytes;
+    private final DiagramScope scope;
+    private final List<DiagramRendererFactory> formats;
+    private final boolean relations;
+    private final int maxNodes;
+    private final int maxEdges;
+    private final int flushTypes;
+
+    /**
+     * Options of a tool that runs javac itself; invalid values are reported on standard error.
+     */
+    public DiagramOptions(Map<String, String> options)
+    {
+        this(options, STANDARD_ERROR);
+    }
+
+    public DiagramOptions(Map<String, String> options, Messager messager)
+    {
+        this.threads = parseThreads(options.get(THREADS), messager);
+        this.incremental = !"false".equalsIgnoreCase(options.get(INCREMENTAL));
+        this.metrics = Boolean.parseBoolean(options.get(METRICS));
+        this.externalTypeStubs = "stub".equalsIgnoreCase(options.get(EXTERNAL_TYPES));
+        this.wholeProgram = Boolean.parseBoolean(options.get(WHOLE_PROGRAM));
+        this.cacheDir = options.get(CACHE_DIR) == null ? null : Paths.get(options.get(CACHE_DIR));
+        this.cacheMaxBytes = parseCacheSize(options.get(CACHE_SIZE), messager) * 1024L * 1024L;
+        this.scope = new DiagramScope(value(options, INCLUDES), value(options, EXCLUDES),
+                                      parseEnum(DiagramScope.Visibility.class, VISIBILITY, options.get(VISIBILITY), DiagramScope.Visibility.PRIVATE, messager),
+                                      parseEnum(DiagramScope.Members.class, MEMBERS, options.get(MEMBERS), DiagramScope.Members.HIDDEN, messager));
+        this.formats = parseFormats(options.get(FORMATS), messager);
+        this.relations = Boolean.parseBoolean(options.get(RELATIONS));
+        this.maxNodes = parseLimit(MAX_NODES, options.get(MAX_NODES), "not splitting diagrams", messager);
+        this.maxEdges = parseLimit(MAX_EDGES, options.get(MAX_EDGES), "not splitting diagrams", messager);
+        this.flushTypes = parseLimit(FLUSH_TYPES, options.get(FLUSH_TYPES), "rendering in the final round", messager);
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    public boolean isMetrics()
+    {
+        return metrics;
+    }
+
+    public boolean isExternalTypeStubs()
+    {
+        return externalTypeStubs;
+    }
+
+    public boolean isWholeProgram()
+    {
+        return wholeProgram;
+    }
+
+    /**
+     * @return the model cache directory, or {@code null} when no cache is used
+     */
+    public Path getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    public long getCacheMaxBytes()
+    {
+        return cacheMaxBytes;
+    }
+
+    public DiagramScope getScope()
+    {
+        return scope;
+    }
+
+    public boolean isRelations()
+    {
+        return relations;
+    }
+
+    /**
+     * @return the node budget of a diagram, {@code 0} for no limit
+     */
+    public int getMaxNodes()
+    {
+        return maxNodes;
+    }
+
+    /**
+     * @return the edge budget of a diagram, {@code 0} for no limit
+     */
+    public int getMaxEdges()
+    {
+        return maxEdges;
+    }
+
+    /**
+     * @return the number of collected types that has them rendered before the final round, {@code 0} for never
+     */
+    public int getFlushTypes()
+    {
+        return flushTypes;
+    }
+
+    /**
+     * @return the formats to write, never empty, in the order {@link DiagramFormat#load} finds them
+     */
+    public List<DiagramRendererFactory> getFormats()
+    {
+        return formats;
+    }
+
+    /**
+     * The options that change what a diagram contains, so a diagram generated with other values is not reused.
+     */
+    public String getOutputSignature()
+    {
+        return EXTERNAL_TYPES + "=" + (externalTypeStubs ? "stub" : "full") + ";" + scope.getSignature() +
+               ";" + MAX_NODES + "=" + maxNodes + ";" + MAX_EDGES + "=" + maxEdges;
+    }
+
+    private static String value(Map<String, String> options, String name)
+    {
+        String value = options.get(name);
+        return value == null ? "" : value;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value, E defaultValue, Messager messager)
+    {
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return DiagramScope.parse(type, value);
+        }
+        catch (IllegalArgumentException e)
+        {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Invalid " + name + " value " + value + ", using " + defaultValue.name().toLowerCase(Locale.ROOT));
+            return defaultValue;
+        }
+    }
+
+    private static List<DiagramRendererFactory> parseFormats(String value, Messager messager)
+    {
+        Map<String, DiagramRendererFactory> available = DiagramFormat.load(DiagramOptions.class.getClassLoader());
+        Set<String> names = new HashSet<>();
+        for (String format : value == null ? new String[0] : value.split(","))
+        {
+            String name = format.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty())
+            {
+                continue;
+            }
+            if (available.containsKey(name))
+            {
+                names.add(name);
+            }
+            else
+            {
+                messager.printMessage(Diagnostic.Kind.WARNING, "Invalid " + FORMATS + " value " + format.trim() + ", ignoring it");
+            }
+        }
+        if (names.isEmpty())
+        {
+            names.add(DiagramFormat.PLANTUML);
+        }
+        List<DiagramRendererFactory> formats = new ArrayList<>(names.size());
+        for (Map.Entry<String, DiagramRendererFactory> format : available.entrySet())
+        {
+            if (names.contains(format.getKey()))
+            {
+                formats.add(format.getValue());
+            }
+        }
+        return Collections.unmodifiableList(formats);
+    }
+
+    private static int parseThreads(String value, Messager messager)
+    {
+        if (value == null)
+        {
+            return 1;
+        }
+        try
+        {
+            int threads = Integer.parseInt(value.trim());
+            if (threads < 0)
+            {
+                throw new NumberFormatException(value);
+            }
+            return threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        }
+        catch (NumberFormatException e)
+        {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Invalid " + THREADS + " value " + value + ", rendering sequentially");
+            return 1;
+        }
+    }
+
+    private static int parseLimit(String name, String value, String fallback, Messager messager)
+    {
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            int limit = Integer.parseInt(value.trim());
+            if (limit < 0)
+            {
+                throw new NumberFormatException(value);
+            }
+            return limit;
+        }
+        catch (NumberFormatException e)
+        {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Invalid " + name + " value " + value + ", " + fallback);
+            return 0;
+        }
+    }
+
+    private static int parseCacheSize(String value, Messager messager)
+    {
+        if (value == null)
+        {
+            return DEFAULT_CACHE_SIZE;
+        }
+        try
+        {
+            int megabytes = Integer.parseInt(value.trim());
+            if (megabytes <= 0)
+            {
+                throw new NumberFormatException(value);
+            }
+            return megabytes;
+        }
+        catch (NumberFormatException e)
+        {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Invalid " + CACHE_SIZE + " value " + value + ", using " + DEFAULT_CACHE_SIZE + " MB");
+            return DEFAULT_CACHE_SIZE;
+        }
+    }
+}
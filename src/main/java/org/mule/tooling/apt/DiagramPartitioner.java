@@ -0,0 +1,578 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Splits diagrams too large to lay out in reasonable time. The types of the diagram are grouped by the connected
+ * components of the edges between them; a component over budget is split further into communities by label
+ * propagation, and a community still over budget into clusters grown breadth first. Groups are then packed into parts within the
+ * budget, and an index diagram, which keeps the original name, shows one block per part linked by the edges cut
+ * between them.
+ * <p>
+ * Nodes are the type blocks, nested types included, plus the names only reached through an edge, such as a
+ * supertype from a library; the latter do not connect types, or every type of a package would be connected through
+ * {@code java.io.Serializable}. Reads nothing but the model, so it is safe to call from any thread.
+ * <p>
+ * Clusters and parts are grown type by type against a running count of their nodes, edges and external names, so
+ * each check costs the edges of the types added rather than those of the whole cluster or part.
+ */
+public class DiagramPartitioner
+{
+    private static final int MAX_PROPAGATION_ROUNDS = 20;
+    private static final long SEED = 0x5EED;
+
+    private final int maxNodes;
+    private final int maxEdges;
+    private final ProcessorMetrics metrics;
+
+    /**
+     * @param maxNodes nodes a diagram may have before it is split, {@code 0} for no limit
+     * @param maxEdges edges and relations a diagram may have before it is split, {@code 0} for no limit
+     */
+    public DiagramPartitioner(int maxNodes, int maxEdges, ProcessorMetrics metrics)
+    {
+        this.maxNodes = maxNodes <= 0 ? Integer.MAX_VALUE : maxNodes;
+        this.maxEdges = maxEdges <= 0 ? Integer.MAX_VALUE : maxEdges;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the diagram alone when it is within budget, else the index diagram followed by the parts, named after
+     * the diagram with a {@code -1}, {@code -2}... suffix
+     */
+    public List<DiagramModel> partition(DiagramModel diagram)
+    {
+        if (maxNodes == Integer.MAX_VALUE && maxEdges == Integer.MAX_VALUE)
+        {
+            return Collections.singletonList(diagram);
+        }
+        Graph graph = new Graph(diagram);
+        if (graph.fits(allTypes(graph.typeCount)))
+        {
+            return Collections.singletonList(diagram);
+        }
+        metrics.increment(ProcessorMetrics.Counter.DIAGRAMS_PARTITIONED);
+        List<int[]> groups = new ArrayList<>();
+        for (int[] component : graph.components())
+        {
+            if (graph.fits(component))
+            {
+                groups.add(component);
+                continue;
+            }
+            for (int[] community : graph.communities(component))
+            {
+                if (graph.fits(community))
+                {
+                    groups.add(community);
+                }
+                else
+                {
+                    groups.addAll(graph.chunks(community));
+                }
+            }
+        }
+        groups.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] partOfType = new int[graph.typeCount];
+        int parts = graph.pack(groups, partOfType);
+        List<DiagramModel> diagrams = new ArrayList<>(parts + 1);
+        diagrams.add(index(diagram, graph, partOfType, parts));
+        for (int part = 0; part < parts; part++)
+        {
+            diagrams.add(part(diagram, graph, partOfType, part));
+        }
+        return diagrams;
+    }
+
+    private static int[] allTypes(int count)
+    {
+        int[] types = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            types[i] = i;
+        }
+        return types;
+    }
+
+    private static String partName(DiagramModel diagram, int part)
+    {
+        return diagram.getName() + "-" + (part + 1);
+    }
+
+    /**
+     * Part blocks are named like the part diagrams, with underscores, so no type of the package can share the
+     * name.
+     */
+    private static String partBlockName(DiagramModel diagram, int part)
+    {
+        return partName(diagram, part).replace('-', '_');
+    }
+
+    private static DiagramModel part(DiagramModel diagram, Graph graph, int[] partOfType, int part)
+    {
+        DiagramModel.Builder builder = DiagramModel.builder(partName(diagram, part), diagram.getPackageName());
+        for (int type = 0; type < graph.typeCount; type++)
+        {
+            if (partOfType[type] == part)
+            {
+                builder.addType(diagram.getTypes().get(type));
+            }
+        }
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            if (graph.inPart(graph.edgeFrom[i], graph.edgeTo[i], partOfType, part))
+            {
+                builder.addEdge(diagram.getEdgeParent(i), diagram.getEdgeChild(i));
+            }
+        }
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            int edge = diagram.getEdgeCount() + i;
+            if (graph.inPart(graph.edgeFrom[edge], graph.edgeTo[edge], partOfType, part))
+            {
+                builder.addRelation(diagram.getRelationSource(i), diagram.getRelationTarget(i), diagram.getRelationKind(i));
+            }
+        }
+        return builder.build();
+    }
+
+    private static DiagramModel index(DiagramModel diagram, Graph graph, int[] partOfType, int parts)
+    {
+        DiagramModel.Builder builder = DiagramModel.builder(diagram.getName(), diagram.getPackageName());
+        for (int part = 0; part < parts; part++)
+        {
+            builder.addType(new TypeModel(partBlockName(diagram, part), TypeModel.Kind.CLASS, null, Collections.emptyList(),
+                                          Collections.emptyList(), Collections.emptyList()));
+        }
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            int parent = graph.edgeFrom[i];
+            int child = graph.edgeTo[i];
+            if (parent >= 0 && child >= 0 && partOfType[parent] != partOfType[child])
+            {
+                builder.addEdge(partBlockName(diagram, partOfType[parent]), partBlockName(diagram, partOfType[child]));
+            }
+        }
+        // associations first, so a pair of parts linked both ways is drawn with the stronger relation
+        for (Relation kind : Arrays.asList(Relation.ASSOCIATION, Relation.DEPENDENCY))
+        {
+            for (int i = 0; i < diagram.getRelationCount(); i++)
+            {
+                int source = graph.edgeFrom[diagram.getEdgeCount() + i];
+                int target = graph.edgeTo[diagram.getEdgeCount() + i];
+                if (diagram.getRelationKind(i) == kind && source >= 0 && target >= 0 && partOfType[source] != partOfType[target])
+                {
+                    builder.addRelation(partBlockName(diagram, partOfType[source]), partBlockName(diagram, partOfType[target]), kind);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The types of a diagram as numbered nodes, with every edge and relation resolved to the type at each end, or
+     * to {@code -1} for a name that is not a type of the diagram.
+     */
+    private class Graph
+    {
+        private final int typeCount;
+        private final int[] weights;
+        private final int[] edgeFrom;
+        private final int[] edgeTo;
+        private final String[] externalFrom;
+        private final String[] externalTo;
+        private final int[] incidentOffsets;
+        private final int[] incident;
+        private final int[] offsets;
+        private final int[] neighbours;
+        private final int[] stamps;
+        private final int[] members;
+        private int generation;
+        private int budgets;
+
+        Graph(DiagramModel diagram)
+        {
+            typeCount = diagram.getTypes().size();
+            weights = new int[typeCount];
+            Map<String, Integer> types = new HashMap<>();
+            for (int type = 0; type < typeCount; type++)
+            {
+                weights[type] = register(diagram.getTypes().get(type), type, types);
+            }
+            int edgeCount = diagram.getEdgeCount() + diagram.getRelationCount();
+            edgeFrom = new int[edgeCount];
+            edgeTo = new int[edgeCount];
+            externalFrom = new String[edgeCount];
+            externalTo = new String[edgeCount];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                boolean edge = i < diagram.getEdgeCount();
+                int relation = i - diagram.getEdgeCount();
+                String from = edge ? diagram.getEdgeParent(i) : diagram.getRelationSource(relation);
+                String to = edge ? diagram.getEdgeChild(i) : diagram.getRelationTarget(relation);
+                edgeFrom[i] = types.getOrDefault(from, -1);
+                edgeTo[i] = types.getOrDefault(to, -1);
+                externalFrom[i] = edgeFrom[i] < 0 ? from : null;
+                externalTo[i] = edgeTo[i] < 0 ? to : null;
+            }
+            incidentOffsets = new int[typeCount + 1];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if (edgeFrom[i] >= 0)
+                {
+                    incidentOffsets[edgeFrom[i] + 1]++;
+                }
+                if (edgeTo[i] >= 0 && edgeTo[i] != edgeFrom[i])
+                {
+                    incidentOffsets[edgeTo[i] + 1]++;
+                }
+            }
+            for (int type = 0; type < typeCount; type++)
+            {
+                incidentOffsets[type + 1] += incidentOffsets[type];
+            }
+            incident = new int[incidentOffsets[typeCount]];
+            int[] nextIncident = Arrays.copyOf(incidentOffsets, typeCount);
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if (edgeFrom[i] >= 0)
+                {
+                    incident[nextIncident[edgeFrom[i]]++] = i;
+                }
+                if (edgeTo[i] >= 0 && edgeTo[i] != edgeFrom[i])
+                {
+                    incident[nextIncident[edgeTo[i]]++] = i;
+                }
+            }
+            stamps = new int[typeCount];
+            members = new int[typeCount];
+            offsets = new int[typeCount + 1];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if (connects(i))
+                {
+                    offsets[edgeFrom[i] + 1]++;
+                    offsets[edgeTo[i] + 1]++;
+                }
+            }
+            for (int type = 0; type < typeCount; type++)
+            {
+                offsets[type + 1] += offsets[type];
+            }
+            neighbours = new int[offsets[typeCount]];
+            int[] next = Arrays.copyOf(offsets, typeCount);
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if (connects(i))
+                {
+                    neighbours[next[edgeFrom[i]]++] = edgeTo[i];
+                    neighbours[next[edgeTo[i]]++] = edgeFrom[i];
+                }
+            }
+        }
+
+        /**
+         * @return the number of blocks the type draws
+         */
+        private int register(TypeModel type, int index, Map<String, Integer> types)
+        {
+            types.put(type.getName(), index);
+            int weight = 1;
+            for (TypeModel nestedType : type.getNestedTypes())
+            {
+                weight += register(nestedType, index, types);
+            }
+            return weight;
+        }
+
+        private boolean connects(int edge)
+        {
+            return edgeFrom[edge] >= 0 && edgeTo[edge] >= 0 && edgeFrom[edge] != edgeTo[edge];
+        }
+
+        boolean inPart(int from, int to, int[] partOfType, int part)
+        {
+            return (from < 0 || partOfType[from] == part) && (to < 0 || partOfType[to] == part) && (from >= 0 || to >= 0);
+        }
+
+        boolean fits(int[] group)
+        {
+            return new Budget().add(group, false);
+        }
+
+        List<int[]> components()
+        {
+            int[] component = new int[typeCount];
+            Arrays.fill(component, -1);
+            List<int[]> components = new ArrayList<>();
+            int[] stack = new int[typeCount];
+            for (int start = 0; start < typeCount; start++)
+            {
+                if (component[start] >= 0)
+                {
+                    continue;
+                }
+                List<Integer> types = new ArrayList<>();
+                int size = 0;
+                stack[size++] = start;
+                component[start] = components.size();
+                while (size > 0)
+                {
+                    int type = stack[--size];
+                    types.add(type);
+                    for (int n = offsets[type]; n < offsets[type + 1]; n++)
+                    {
+                        if (component[neighbours[n]] < 0)
+                        {
+                            component[neighbours[n]] = components.size();
+                            stack[size++] = neighbours[n];
+                        }
+                    }
+                }
+                components.add(sorted(types));
+            }
+            return components;
+        }
+
+        /**
+         * Label propagation: every type repeatedly takes the label most of its neighbours have, until labels settle.
+         * Types are visited in random order and ties broken at random, as the algorithm needs, from a fixed seed so
+         * the same diagram is always split the same way.
+         */
+        List<int[]> communities(int[] component)
+        {
+            int[] labels = new int[typeCount];
+            for (int type : component)
+            {
+                labels[type] = type;
+            }
+            Random random = new Random(SEED);
+            int[] order = component.clone();
+            Map<Integer, Integer> counts = new HashMap<>();
+            List<Integer> best = new ArrayList<>();
+            for (int round = 0; round < MAX_PROPAGATION_ROUNDS; round++)
+            {
+                for (int i = order.length - 1; i > 0; i--)
+                {
+                    int j = random.nextInt(i + 1);
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                }
+                boolean changed = false;
+                for (int type : order)
+                {
+                    if (offsets[type] == offsets[type + 1])
+                    {
+                        continue;
+                    }
+                    counts.clear();
+                    best.clear();
+                    int bestCount = 0;
+                    for (int n = offsets[type]; n < offsets[type + 1]; n++)
+                    {
+                        int label = labels[neighbours[n]];
+                        int count = counts.merge(label, 1, Integer::sum);
+                        if (count > bestCount)
+                        {
+                            best.clear();
+                            bestCount = count;
+                        }
+                        if (count == bestCount)
+                        {
+                            best.add(label);
+                        }
+                    }
+                    if (!best.contains(labels[type]))
+                    {
+                        labels[type] = best.get(random.nextInt(best.size()));
+                        changed = true;
+                    }
+                }
+                if (!changed)
+                {
+                    break;
+                }
+            }
+            Map<Integer, List<Integer>> byLabel = new LinkedHashMap<>();
+            for (int type : component)
+            {
+                byLabel.computeIfAbsent(labels[type], x -> new ArrayList<>()).add(type);
+            }
+            List<int[]> communities = new ArrayList<>(byLabel.size());
+            for (List<Integer> community : byLabel.values())
+            {
+                communities.add(sorted(community));
+            }
+            return communities;
+        }
+
+        /**
+         * Cuts the group into clusters grown breadth first from its lowest unassigned type, each as large as the
+         * budget allows, so connected types stay together.
+         */
+        List<int[]> chunks(int[] group)
+        {
+            boolean[] inGroup = new boolean[typeCount];
+            for (int type : group)
+            {
+                inGroup[type] = true;
+            }
+            boolean[] assigned = new boolean[typeCount];
+            int[] single = new int[1];
+            List<int[]> chunks = new ArrayList<>();
+            for (int start : group)
+            {
+                if (assigned[start])
+                {
+                    continue;
+                }
+                assigned[start] = true;
+                single[0] = start;
+                Budget budget = new Budget();
+                budget.add(single, true);
+                List<Integer> chunk = new ArrayList<>();
+                chunk.add(start);
+                for (int next = 0; next < chunk.size(); next++)
+                {
+                    int type = chunk.get(next);
+                    for (int n = offsets[type]; n < offsets[type + 1]; n++)
+                    {
+                        int neighbour = neighbours[n];
+                        single[0] = neighbour;
+                        if (inGroup[neighbour] && !assigned[neighbour] && budget.add(single, false))
+                        {
+                            assigned[neighbour] = true;
+                            chunk.add(neighbour);
+                        }
+                    }
+                }
+                chunks.add(sorted(chunk));
+            }
+            return chunks;
+        }
+
+        /**
+         * Adds each group to the last part when they fit together, else starts a new part with it.
+         *
+         * @return the number of parts
+         */
+        int pack(List<int[]> groups, int[] partOfType)
+        {
+            int parts = 0;
+            Budget part = null;
+            for (int[] group : groups)
+            {
+                if (part == null || !part.add(group, false))
+                {
+                    part = new Budget();
+                    part.add(group, true);
+                    parts++;
+                }
+                for (int type : group)
+                {
+                    partOfType[type] = parts - 1;
+                }
+            }
+            return parts;
+        }
+
+        private int[] sorted(List<Integer> types)
+        {
+            int[] sorted = new int[types.size()];
+            for (int i = 0; i < sorted.length; i++)
+            {
+                sorted[i] = types.get(i);
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /**
+         * The nodes, edges and external names of a growing set of types. Only the most recently created budget
+         * may grow, as membership is stamped in an array shared by all of them.
+         */
+        private class Budget
+        {
+            private final int id = ++budgets;
+            private final Set<String> externals = new HashSet<>();
+            private int nodes;
+            private int edges;
+
+            /**
+             * Adds the types when the set still fits the budget with them, or regardless when forced. An edge is
+             * counted once every type at its ends is in the set, from the first of its ends among the types added.
+             *
+             * @return whether the set fits the budget with the types
+             */
+            boolean add(int[] types, boolean force)
+            {
+                generation++;
+                int addedNodes = 0;
+                for (int type : types)
+                {
+                    stamps[type] = generation;
+                    addedNodes += weights[type];
+                }
+                int addedEdges = 0;
+                Set<String> addedExternals = new HashSet<>();
+                for (int type : types)
+                {
+                    for (int n = incidentOffsets[type]; n < incidentOffsets[type + 1]; n++)
+                    {
+                        int edge = incident[n];
+                        int from = edgeFrom[edge];
+                        int to = edgeTo[edge];
+                        boolean fromAdded = from >= 0 && stamps[from] == generation;
+                        if ((fromAdded ? from : to) != type || !isIn(from) || !isIn(to))
+                        {
+                            continue;
+                        }
+                        addedEdges++;
+                        if (from < 0 && !externals.contains(externalFrom[edge]))
+                        {
+                            addedExternals.add(externalFrom[edge]);
+                        }
+                        if (to < 0 && !externals.contains(externalTo[edge]))
+                        {
+                            addedExternals.add(externalTo[edge]);
+                        }
+                    }
+                }
+                boolean fits = nodes + addedNodes + externals.size() + addedExternals.size() <= maxNodes && edges + addedEdges <= maxEdges;
+                if (fits || force)
+                {
+                    for (int type : types)
+                    {
+                        members[type] = id;
+                    }
+                    nodes += addedNodes;
+                    edges += addedEdges;
+                    externals.addAll(addedExternals);
+                }
+                return fits;
+            }
+
+            /**
+             * Whether an end of an edge is an external name or a type of the set or of the types being added.
+             */
+            private boolean isIn(int type)
+            {
+                return type < 0 || members[type] == id || stamps[type] == generation;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link DiagramModel} in one output format. Renderers read nothing but the model, so one extraction can
+ * be rendered by several of them, from any thread.
+ */
+public interface DiagramRenderer
+{
+    /**
+     * @return the suffix of the resources this renderer writes, such as {@code .adoc}
+     */
+    String getExtension();
+
+    void render(DiagramModel diagram, DiagramWriter writer) throws IOException;
+}
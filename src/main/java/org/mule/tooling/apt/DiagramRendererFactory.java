@@ -0,0 +1,20 @@
+package org.mule.tooling.apt;
+
+/**
+ * Creates the renderers of one diagram output format. Formats are {@link java.util.ServiceLoader} services: a jar on
+ * the processor path lists its implementations in {@code META-INF/services/org.mule.tooling.apt.DiagramRendererFactory}
+ * and they are selected by {@link #getName() name} in {@link DiagramOptions#FORMATS}. The built-in formats are
+ * registered the same way.
+ */
+public interface DiagramRendererFactory
+{
+    /**
+     * @return the name the format is selected by, such as {@code plantuml}; case is ignored
+     */
+    String getName();
+
+    /**
+     * @param hideMembers whether diagrams only draw type names; the members are still in the model
+     */
+    DiagramRenderer createRenderer(boolean hideMembers);
+}
@@ -0,0 +1,173 @@
+package org.mule.tooling.apt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * What goes into diagrams, decided before any type is read. Type patterns are globs over qualified names:
+ * {@code *} matches within one name segment, {@code **} across segments and {@code ?} one character, so
+ * {@code com.acme.*} is the types of {@code com.acme} and {@code com.acme.**} those of its subpackages too.
+ */
+public class DiagramScope
+{
+    /**
+     * How members are treated: {@code HIDDEN} renders them and has PlantUML hide them, {@code SHOWN} renders them
+     * visibly, {@code NONE} never reads them.
+     */
+    public enum Members
+    {
+        HIDDEN, SHOWN, NONE
+    }
+
+    /**
+     * Lowest visibility a member needs to be rendered.
+     */
+    public enum Visibility
+    {
+        PRIVATE, PACKAGE, PROTECTED, PUBLIC
+    }
+
+    private static final DiagramScope ALL = new DiagramScope("", "", Visibility.PRIVATE, Members.HIDDEN);
+
+    private final String includes;
+    private final String excludes;
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+    private final Visibility visibility;
+    private final Members members;
+
+    /**
+     * @param includes comma separated patterns of the source types that get diagrams; empty for all of them
+     * @param excludes comma separated patterns of types left out of every diagram, whether they are source types or
+     *                 pulled in by a hierarchy, together with their edges
+     */
+    public DiagramScope(String includes, String excludes, Visibility visibility, Members members)
+    {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.includePatterns = patterns(includes);
+        this.excludePatterns = patterns(excludes);
+        this.visibility = visibility;
+        this.members = members;
+    }
+
+    public static DiagramScope all()
+    {
+        return ALL;
+    }
+
+    /**
+     * Whether a source type gets into its package diagram.
+     */
+    public boolean includes(String qualifiedName)
+    {
+        return (includePatterns.isEmpty() || matches(includePatterns, qualifiedName)) && !excludes(qualifiedName);
+    }
+
+    public boolean excludes(String qualifiedName)
+    {
+        return matches(excludePatterns, qualifiedName);
+    }
+
+    public boolean includesEdge(String parent, String child)
+    {
+        return !excludes(parent) && !excludes(child);
+    }
+
+    public boolean isVisible(Collection<Modifier> modifiers)
+    {
+        return visibility(modifiers).compareTo(visibility) >= 0;
+    }
+
+    public Members getMembers()
+    {
+        return members;
+    }
+
+    /**
+     * The settings that change what a type's model holds.
+     */
+    public String getSignature()
+    {
+        return "includes=" + includes + ";excludes=" + excludes + ";visibility=" + visibility + ";members=" + members;
+    }
+
+    private static Visibility visibility(Collection<Modifier> modifiers)
+    {
+        if (modifiers.contains(Modifier.PUBLIC))
+        {
+            return Visibility.PUBLIC;
+        }
+        if (modifiers.contains(Modifier.PROTECTED))
+        {
+            return Visibility.PROTECTED;
+        }
+        if (modifiers.contains(Modifier.PRIVATE))
+        {
+            return Visibility.PRIVATE;
+        }
+        return Visibility.PACKAGE;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String qualifiedName)
+    {
+        for (Pattern pattern : patterns)
+        {
+            if (pattern.matcher(qualifiedName).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Pattern> patterns(String globs)
+    {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String glob : globs.split(","))
+        {
+            if (!glob.trim().isEmpty())
+            {
+                patterns.add(toPattern(glob.trim()));
+            }
+        }
+        return patterns;
+    }
+
+    private static Pattern toPattern(String glob)
+    {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++)
+        {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*')
+            {
+                regex.append(".*");
+                i++;
+            }
+            else if (c == '*')
+            {
+                regex.append("[^.]*");
+            }
+            else if (c == '?')
+            {
+                regex.append("[^.]");
+            }
+            else
+            {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    static <E extends Enum<E>> E parse(Class<E> type, String value)
+    {
+        return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,64 @@
+package org.mule.tooling.apt;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams a diagram to the underlying {@link Writer} one block at a time. Callers render a type block or a
+ * hierarchy edge into {@link #block()} and call {@link #flushBlock()}; the block is then handed to the writer, so
+ * no full copy of the diagram is ever held on the heap.
+ */
+public class DiagramWriter implements AutoCloseable
+{
+    private final Writer writer;
+    private final ProcessorMetrics metrics;
+    private final StringBuilder block;
+
+    public DiagramWriter(Writer writer)
+    {
+        this(writer, ProcessorMetrics.create(false));
+    }
+
+    /**
+     * @param metrics receives the time spent handing text to {@code writer}, as {@link ProcessorMetrics.Phase#WRITE}
+     */
+    public DiagramWriter(Writer writer, ProcessorMetrics metrics)
+    {
+        this.writer = writer;
+        this.metrics = metrics;
+        this.block = new StringBuilder(8192);
+    }
+
+    public StringBuilder block()
+    {
+        return block;
+    }
+
+    public DiagramWriter write(String text) throws IOException
+    {
+        flushBlock();
+        long start = metrics.start();
+        writer.write(text);
+        metrics.stop(ProcessorMetrics.Phase.WRITE, start);
+        return this;
+    }
+
+    public void flushBlock() throws IOException
+    {
+        long started = metrics.start();
+        if (block.length() > 0)
+        {
+            writer.append(block);
+            block.setLength(0);
+        }
+        metrics.stop(ProcessorMetrics.Phase.WRITE, started);
+    }
+
+    @Override public void close() throws IOException
+    {
+        flushBlock();
+        long start = metrics.start();
+        writer.close();
+        metrics.stop(ProcessorMetrics.Phase.WRITE, start);
+    }
+}
@@ -0,0 +1,157 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+
+/**
+ * Writes models as Graphviz DOT: one record node per type, named by its qualified name, and edges pointing from
+ * each type to its supertypes, with open arrows to the types it refers to, dashed for dependencies.
+ */
+public class DotRenderer implements DiagramRenderer
+{
+    private final boolean hideMembers;
+
+    public DotRenderer(boolean hideMembers)
+    {
+        this.hideMembers = hideMembers;
+    }
+
+    @Override public String getExtension()
+    {
+        return ".dot";
+    }
+
+    @Override public void render(DiagramModel diagram, DiagramWriter writer) throws IOException
+    {
+        writer.write("digraph " + quote(diagram.getName()) + " {\n" +
+                     "\tlabel=" + quote(diagram.getPackageName()) + ";\n" +
+                     "\trankdir=BT;\n" +
+                     "\tnode [shape=record];\n" +
+                     "\tedge [arrowhead=empty];\n");
+        for (TypeModel type : diagram.getTypes())
+        {
+            renderType(type, writer.block());
+            writer.flushBlock();
+        }
+        StringBuilder block = writer.block();
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            block.append('\t').append(quote(diagram.getEdgeChild(i))).append(" -> ").append(quote(diagram.getEdgeParent(i))).append(";\n");
+        }
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            block.append('\t').append(quote(diagram.getRelationSource(i))).append(" -> ").append(quote(diagram.getRelationTarget(i)))
+                 .append(diagram.getRelationKind(i) == Relation.ASSOCIATION ? " [arrowhead=vee];\n" : " [arrowhead=vee, style=dashed];\n");
+        }
+        writer.write("}\n");
+    }
+
+    private void renderType(TypeModel type, StringBuilder o)
+    {
+        StringBuilder label = new StringBuilder("{");
+        if (type.getKind() != TypeModel.Kind.CLASS)
+        {
+            label.append(escape("<<" + type.getKind().getKeyword() + ">>")).append("\\n");
+        }
+        label.append(escape(type.getName()));
+        if (!hideMembers)
+        {
+            label.append('|');
+            for (MemberModel member : type.getMembers())
+            {
+                if (!member.isMethod())
+                {
+                    label.append(escape(member(member))).append("\\l");
+                }
+            }
+            label.append('|');
+            for (MemberModel member : type.getMembers())
+            {
+                if (member.isMethod())
+                {
+                    label.append(escape(member(member))).append("\\l");
+                }
+            }
+        }
+        label.append('}');
+        o.append('\t').append(quote(type.getName())).append(" [label=\"").append(label).append("\"];\n");
+        for (TypeModel nestedType : type.getNestedTypes())
+        {
+            renderType(nestedType, o);
+        }
+    }
+
+    private static String member(MemberModel member)
+    {
+        StringBuilder o = new StringBuilder();
+        int modifiers = member.getModifiers();
+        o.append((modifiers & Modifiers.PUBLIC) != 0 ? "+" : (modifiers & Modifiers.PROTECTED) != 0 ? "#" : (modifiers & Modifiers.PRIVATE) != 0 ? "-" : "~");
+        if ((modifiers & Modifiers.STATIC) != 0)
+        {
+            o.append("static ");
+        }
+        if ((modifiers & Modifiers.ABSTRACT) != 0)
+        {
+            o.append("abstract ");
+        }
+        o.append(member.getName());
+        if (member.isMethod())
+        {
+            o.append('(');
+            for (int i = 0; i < member.getParameterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    o.append(", ");
+                }
+                o.append(member.getParameterType(i)).append(' ').append(member.getParameterName(i));
+            }
+            o.append(')');
+        }
+        return o.append(": ").append(member.getType()).toString();
+    }
+
+    /**
+     * Escapes the characters record labels give a meaning to, and quotes, as labels are written quoted.
+     */
+    private static String escape(String text)
+    {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if ("{}|<>\"\\".indexOf(c) >= 0)
+            {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static String quote(String id)
+    {
+        return '"' + id.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Graphviz DOT.
+     */
+    public static class Factory implements DiagramRendererFactory
+    {
+        @Override public String getName()
+        {
+            return "dot";
+        }
+
+        @Override public DiagramRenderer createRenderer(boolean hideMembers)
+        {
+            return new DotRenderer(hideMembers);
+        }
+    }
+}
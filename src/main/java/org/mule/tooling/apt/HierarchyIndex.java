@@ -0,0 +1,187 @@
+package org.mule.tooling.apt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.NoType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Memoized supertype closure per type, shared by every package diagram and processing round of a compilation.
+ * Lookups are thread safe; resolving a missing entry reads compiler symbols and must happen on the javac thread.
+ * Entries hold names only: javac 8 does not keep elements valid from one round to the next, so the interfaces of an
+ * entry are looked up again in the round that asks for them.
+ */
+public class HierarchyIndex
+{
+    private final TypeResolution resolution;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public HierarchyIndex(ProcessingEnvironment processingEnv)
+    {
+        this(new TypeResolution(processingEnv.getElementUtils(), processingEnv.getTypeUtils()));
+    }
+
+    public HierarchyIndex(TypeResolution resolution)
+    {
+        this.resolution = resolution;
+    }
+
+    public Entry get(TypeElement typeElement)
+    {
+        String key = typeElement.getQualifiedName().toString();
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        entry = resolve(typeElement);
+        Entry previous = entries.putIfAbsent(key, entry);
+        return previous != null ? previous : entry;
+    }
+
+    /**
+     * @return the elements, in the current round, of every interface in the supertype closure of the entry, in walk
+     *         order
+     */
+    public List<TypeElement> getInterfaces(Entry entry)
+    {
+        List<TypeElement> interfaces = new ArrayList<>(entry.getInterfaceNames().size());
+        for (String interfaceName : entry.getInterfaceNames())
+        {
+            TypeElement interfaceElement = resolution.getTypeElement(interfaceName);
+            if (interfaceElement != null)
+            {
+                interfaces.add(interfaceElement);
+            }
+        }
+        return interfaces;
+    }
+
+    /**
+     * Forgets what was resolved from the type mirrors of the previous round; the entries themselves are kept.
+     */
+    public void newRound()
+    {
+        resolution.clear();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    private Entry resolve(TypeElement typeElement)
+    {
+        Set<String> interfaces = new LinkedHashSet<>();
+        Edges edges = new Edges();
+        String child = typeElement.getQualifiedName().toString();
+        TypeMirror superclass = typeElement.getSuperclass();
+        if (superclass != null && !(superclass instanceof NoType) && !resolution.isObject(superclass))
+        {
+            edges.add(resolution.edgeName(superclass), child);
+            TypeElement superClassType = resolution.asTypeElement(superclass);
+            if (superClassType != null)
+            {
+                Entry parent = get(superClassType);
+                interfaces.addAll(parent.getInterfaceNames());
+                edges.addAll(parent);
+            }
+        }
+        for (TypeMirror x : typeElement.getInterfaces())
+        {
+            TypeElement interfaceElement = resolution.asTypeElement(x);
+            edges.add(resolution.edgeName(x), child);
+            if (interfaceElement != null)
+            {
+                interfaces.add(interfaceElement.getQualifiedName().toString());
+                Entry parent = get(interfaceElement);
+                interfaces.addAll(parent.getInterfaceNames());
+                edges.addAll(parent);
+            }
+        }
+        return new Entry(new ArrayList<>(interfaces), edges.parents.toArray(new String[0]), edges.children.toArray(new String[0]));
+    }
+
+    public static class Entry
+    {
+        private final List<String> interfaceNames;
+        private final String[] edgeParents;
+        private final String[] edgeChildren;
+
+        Entry(List<String> interfaceNames, String[] edgeParents, String[] edgeChildren)
+        {
+            this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+            this.edgeParents = edgeParents;
+            this.edgeChildren = edgeChildren;
+        }
+
+        /**
+         * Qualified name of every interface in the supertype closure, in walk order.
+         */
+        public List<String> getInterfaceNames()
+        {
+            return interfaceNames;
+        }
+
+        /**
+         * Number of {@code parent<|--child} edges in the supertype closure; edges are numbered in walk order.
+         */
+        public int getEdgeCount()
+        {
+            return edgeParents.length;
+        }
+
+        public String getEdgeParent(int index)
+        {
+            return edgeParents[index];
+        }
+
+        public String getEdgeChild(int index)
+        {
+            return edgeChildren[index];
+        }
+    }
+
+    private static class Edges
+    {
+        private final Set<String> keys = new HashSet<>();
+        private final List<String> parents = new ArrayList<>();
+        private final List<String> children = new ArrayList<>();
+
+        void add(String parent, String child)
+        {
+            if (keys.add(parent + "<|--" + child))
+            {
+                parents.add(parent);
+                children.add(child);
+            }
+        }
+
+        void addAll(Entry entry)
+        {
+            for (int i = 0; i < entry.getEdgeCount(); i++)
+            {
+                add(entry.getEdgeParent(i), entry.getEdgeChild(i));
+            }
+        }
+    }
+}
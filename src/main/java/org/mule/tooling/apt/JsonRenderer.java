@@ -0,0 +1,152 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Writes models as JSON, members included whatever the diagrams show. Modifiers are listed by name, in the order
+ * javac reports them.
+ */
+public class JsonRenderer implements DiagramRenderer
+{
+    private static final String[] MODIFIER_NAMES = {"public", "protected", "private", "abstract", "default", "static", "final",
+                                                    "transient", "volatile", "synchronized", "native", "strictfp"};
+
+    @Override public String getExtension()
+    {
+        return ".json";
+    }
+
+    @Override public void render(DiagramModel diagram, DiagramWriter writer) throws IOException
+    {
+        StringBuilder header = new StringBuilder("{\n  \"name\": ");
+        string(diagram.getName(), header).append(",\n  \"package\": ");
+        string(diagram.getPackageName(), header).append(",\n  \"types\": [");
+        writer.write(header.toString());
+        String separator = "\n    ";
+        for (TypeModel type : diagram.getTypes())
+        {
+            StringBuilder block = writer.block().append(separator);
+            renderType(type, block);
+            writer.flushBlock();
+            separator = ",\n    ";
+        }
+        StringBuilder block = writer.block().append("\n  ],\n  \"edges\": [");
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            block.append(i == 0 ? "\n    " : ",\n    ").append("{\"parent\": ");
+            string(diagram.getEdgeParent(i), block).append(", \"child\": ");
+            string(diagram.getEdgeChild(i), block).append('}');
+        }
+        block.append("\n  ],\n  \"relations\": [");
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            block.append(i == 0 ? "\n    " : ",\n    ").append("{\"source\": ");
+            string(diagram.getRelationSource(i), block).append(", \"target\": ");
+            string(diagram.getRelationTarget(i), block).append(", \"kind\": \"")
+                 .append(diagram.getRelationKind(i).name().toLowerCase(Locale.ROOT)).append("\"}");
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    private static void renderType(TypeModel type, StringBuilder o)
+    {
+        o.append("{\"name\": ");
+        string(type.getName(), o).append(", \"kind\": ");
+        string(type.getKind().getKeyword(), o).append(", \"superclass\": ");
+        string(type.getSuperclass(), o).append(", \"interfaces\": [");
+        for (int i = 0; i < type.getInterfaces().size(); i++)
+        {
+            string(type.getInterfaces().get(i), i == 0 ? o : o.append(", "));
+        }
+        o.append("], \"members\": [");
+        for (int i = 0; i < type.getMembers().size(); i++)
+        {
+            renderMember(type.getMembers().get(i), i == 0 ? o : o.append(", "));
+        }
+        o.append("], \"nestedTypes\": [");
+        for (int i = 0; i < type.getNestedTypes().size(); i++)
+        {
+            renderType(type.getNestedTypes().get(i), i == 0 ? o : o.append(", "));
+        }
+        o.append("]}");
+    }
+
+    private static void renderMember(MemberModel member, StringBuilder o)
+    {
+        o.append("{\"name\": ");
+        string(member.getName(), o).append(", \"kind\": \"").append(member.isMethod() ? "method" : "field").append("\", \"modifiers\": [");
+        boolean first = true;
+        for (int i = 0; i < MODIFIER_NAMES.length; i++)
+        {
+            if ((member.getModifiers() & (1 << i)) != 0)
+            {
+                o.append(first ? "\"" : ", \"").append(MODIFIER_NAMES[i]).append('"');
+                first = false;
+            }
+        }
+        o.append("], \"type\": ");
+        string(member.getType(), o);
+        if (member.isMethod())
+        {
+            o.append(", \"parameters\": [");
+            for (int i = 0; i < member.getParameterCount(); i++)
+            {
+                o.append(i == 0 ? "{\"name\": " : ", {\"name\": ");
+                string(member.getParameterName(i), o).append(", \"type\": ");
+                string(member.getParameterType(i), o).append('}');
+            }
+            o.append(']');
+        }
+        o.append('}');
+    }
+
+    /**
+     * Appends {@code value} as a JSON string, or {@code null}.
+     */
+    public static StringBuilder string(String value, StringBuilder o)
+    {
+        if (value == null)
+        {
+            return o.append("null");
+        }
+        o.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                o.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                o.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                o.append(c);
+            }
+        }
+        return o.append('"');
+    }
+
+    /**
+     * The model itself, members included, for tools that do their own layout.
+     */
+    public static class Factory implements DiagramRendererFactory
+    {
+        @Override public String getName()
+        {
+            return "json";
+        }
+
+        @Override public DiagramRenderer createRenderer(boolean hideMembers)
+        {
+            return new JsonRenderer();
+        }
+    }
+}
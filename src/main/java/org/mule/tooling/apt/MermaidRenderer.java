@@ -0,0 +1,188 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes models as Mermaid class diagrams. Mermaid class ids cannot hold dots, so every type gets an id derived
+ * from its qualified name and the name itself as label; generic brackets become Mermaid's {@code ~}.
+ */
+public class MermaidRenderer implements DiagramRenderer
+{
+    private final boolean hideMembers;
+
+    public MermaidRenderer(boolean hideMembers)
+    {
+        this.hideMembers = hideMembers;
+    }
+
+    @Override public String getExtension()
+    {
+        return ".mmd";
+    }
+
+    @Override public void render(DiagramModel diagram, DiagramWriter writer) throws IOException
+    {
+        writer.write((diagram.getPackageName().isEmpty() ? "" : "---\n" +
+                                                                 "title: " + diagram.getPackageName() + "\n" +
+                                                                 "---\n") +
+                     "classDiagram\n");
+        Set<String> declared = new HashSet<>();
+        for (TypeModel type : diagram.getTypes())
+        {
+            renderType(type, declared, writer.block());
+            writer.flushBlock();
+        }
+        StringBuilder block = writer.block();
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            String parent = diagram.getEdgeParent(i);
+            String child = diagram.getEdgeChild(i);
+            declare(parent, declared, block);
+            declare(child, declared, block);
+            block.append(id(parent)).append(" <|-- ").append(id(child)).append('\n');
+        }
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            String source = diagram.getRelationSource(i);
+            String target = diagram.getRelationTarget(i);
+            declare(source, declared, block);
+            declare(target, declared, block);
+            block.append(id(source)).append(diagram.getRelationKind(i) == Relation.ASSOCIATION ? " --> " : " ..> ").append(id(target)).append('\n');
+        }
+    }
+
+    private void renderType(TypeModel type, Set<String> declared, StringBuilder o)
+    {
+        declare(type.getName(), declared, o);
+        String id = id(type.getName());
+        if (type.getKind() != TypeModel.Kind.CLASS)
+        {
+            o.append("<<").append(type.getKind() == TypeModel.Kind.ENUM ? "enumeration" : type.getKind().getKeyword()).append(">> ").append(id).append('\n');
+        }
+        if (!hideMembers)
+        {
+            for (MemberModel member : type.getMembers())
+            {
+                o.append(id).append(" : ");
+                renderMember(member, o);
+                o.append('\n');
+            }
+        }
+        for (TypeModel nestedType : type.getNestedTypes())
+        {
+            renderType(nestedType, declared, o);
+        }
+    }
+
+    private static void renderMember(MemberModel member, StringBuilder o)
+    {
+        int modifiers = member.getModifiers();
+        o.append(visibility(modifiers));
+        if (!member.isMethod())
+        {
+            o.append(typeName(member.getType())).append(' ').append(member.getName());
+        }
+        else
+        {
+            o.append(member.getName()).append('(');
+            for (int i = 0; i < member.getParameterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    o.append(", ");
+                }
+                o.append(typeName(member.getParameterType(i))).append(' ').append(member.getParameterName(i));
+            }
+            o.append(") ").append(typeName(member.getType()));
+        }
+        if ((modifiers & Modifiers.STATIC) != 0)
+        {
+            o.append('$');
+        }
+        else if ((modifiers & Modifiers.ABSTRACT) != 0)
+        {
+            o.append('*');
+        }
+    }
+
+    private static void declare(String name, Set<String> declared, StringBuilder o)
+    {
+        if (declared.add(name))
+        {
+            o.append("class ").append(id(name)).append("[\"").append(name.replace('"', '\'')).append("\"]\n");
+        }
+    }
+
+    private static String visibility(int modifiers)
+    {
+        if ((modifiers & Modifiers.PUBLIC) != 0)
+        {
+            return "+";
+        }
+        if ((modifiers & Modifiers.PROTECTED) != 0)
+        {
+            return "#";
+        }
+        if ((modifiers & Modifiers.PRIVATE) != 0)
+        {
+            return "-";
+        }
+        return "~";
+    }
+
+    /**
+     * The name with dots as {@code _} and every other character Mermaid ids cannot hold, {@code _} included, as
+     * {@code _<code point>_}. A dot is never followed by a digit in a qualified name, so distinct names always get
+     * distinct ids: {@code a.b_c} is {@code a_b_95_c} and {@code a_b.c} is {@code a_95_b_c}.
+     */
+    static String id(String name)
+    {
+        StringBuilder id = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c))
+            {
+                id.append(c);
+            }
+            else if (c == '.')
+            {
+                id.append('_');
+            }
+            else
+            {
+                id.append('_').append((int) c).append('_');
+            }
+        }
+        return id.toString();
+    }
+
+    private static String typeName(String type)
+    {
+        return type.replace('<', '~').replace('>', '~').replace(" ", "");
+    }
+
+    /**
+     * Mermaid class diagrams.
+     */
+    public static class Factory implements DiagramRendererFactory
+    {
+        @Override public String getName()
+        {
+            return "mermaid";
+        }
+
+        @Override public DiagramRenderer createRenderer(boolean hideMembers)
+        {
+            return new MermaidRenderer(hideMembers);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.ModelCodec;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Type models of previous builds, in one file of a directory that outlives the build, keyed by a per-type
+ * fingerprint. The file is memory mapped and only its index is read up front; a model is decoded the first time it
+ * is asked for. Entries are kept in least recently used order, and the oldest are evicted once the file would grow
+ * past its size cap.
+ * <p>
+ * File layout: magic, version and entry count, then one {@value #KEY_SIZE} byte key and record length per entry,
+ * oldest first, then the {@link ModelCodec} records in the same order.
+ */
+public class ModelCache
+{
+    public static final String FILE_NAME = "diagram-models.bin";
+    public static final int KEY_SIZE = 32;
+
+    private static final int MAGIC = 0x444D4331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = KEY_SIZE + 4;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Interner interner;
+    private final ProcessorMetrics metrics;
+    private final Map<ByteBuffer, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private ByteBuffer mapped;
+    private long size = HEADER_SIZE;
+    private boolean dirty;
+
+    private ModelCache(Path directory, long maxBytes, Interner interner, ProcessorMetrics metrics)
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.interner = interner;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Opens the cache of {@code directory}. A missing, unreadable or incompatible file gives an empty cache, which
+     * replaces it when {@linkplain #store() stored}.
+     */
+    public static ModelCache open(Path directory, long maxBytes, Interner interner, ProcessorMetrics metrics)
+    {
+        ModelCache cache = new ModelCache(directory, maxBytes, interner, metrics);
+        try (FileChannel channel = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.READ))
+        {
+            cache.load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        catch (NoSuchFileException e)
+        {
+            // cold cache
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException e)
+        {
+            cache.entries.clear();
+            cache.mapped = null;
+            cache.size = HEADER_SIZE;
+        }
+        return cache;
+    }
+
+    /**
+     * @return an empty cache kept in memory only, such as the warm cache of a long running process
+     */
+    public static ModelCache inMemory(long maxBytes, Interner interner, ProcessorMetrics metrics)
+    {
+        return new ModelCache(null, maxBytes, interner, metrics);
+    }
+
+    private void load(ByteBuffer buffer)
+    {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        {
+            throw new IllegalArgumentException("Not a diagram model cache");
+        }
+        int count = buffer.getInt();
+        int offset = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        for (int i = 0; i < count; i++)
+        {
+            byte[] key = new byte[KEY_SIZE];
+            buffer.get(key);
+            int length = buffer.getInt();
+            if (length < 0 || offset + length > buffer.capacity())
+            {
+                throw new IllegalArgumentException("Truncated diagram model cache");
+            }
+            entries.put(ByteBuffer.wrap(key), new Entry(offset, length, null));
+            size += INDEX_ENTRY_SIZE + length;
+            offset += length;
+        }
+        mapped = buffer;
+    }
+
+    /**
+     * @return the model stored under {@code key}, or {@code null}
+     */
+    public TypeModel get(byte[] key)
+    {
+        ByteBuffer wrappedKey = ByteBuffer.wrap(key);
+        Entry entry = entries.get(wrappedKey);
+        if (entry != null && entry.model == null)
+        {
+            try
+            {
+                entry.model = ModelCodec.decodeType(entry.record(mapped), interner);
+            }
+            catch (RuntimeException e)
+            {
+                // a corrupt record fails as whatever its bytes run into; it is dropped and extracted again
+                entries.remove(wrappedKey);
+                size -= INDEX_ENTRY_SIZE + entry.length;
+                dirty = true;
+                entry = null;
+            }
+        }
+        if (entry == null)
+        {
+            metrics.increment(ProcessorMetrics.Counter.MODEL_CACHE_MISSES);
+            return null;
+        }
+        metrics.increment(ProcessorMetrics.Counter.MODEL_CACHE_HITS);
+        return entry.model;
+    }
+
+    public void put(byte[] key, TypeModel model)
+    {
+        if (key.length != KEY_SIZE)
+        {
+            throw new IllegalArgumentException("Keys are " + KEY_SIZE + " bytes");
+        }
+        byte[] record = ModelCodec.encode(model);
+        Entry entry = new Entry(0, record.length, record);
+        entry.model = model;
+        Entry previous = entries.put(ByteBuffer.wrap(key.clone()), entry);
+        if (previous != null)
+        {
+            size -= INDEX_ENTRY_SIZE + previous.length;
+        }
+        size += INDEX_ENTRY_SIZE + record.length;
+        dirty = true;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maxBytes && eldest.hasNext())
+        {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            size -= INDEX_ENTRY_SIZE + evicted.length;
+            metrics.increment(ProcessorMetrics.Counter.MODEL_CACHE_EVICTIONS);
+        }
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Rewrites the cache file if models were added, in least recently used order. The new file is written next to
+     * the old one and moved over it, so concurrent builds sharing the directory never read a partial file. The records
+     * of the old file are read into memory first and its mapping is dropped, to be released by the collector. An
+     * {@linkplain #inMemory in memory} cache is not stored.
+     */
+    public void store() throws IOException
+    {
+        if (!dirty || directory == null)
+        {
+            return;
+        }
+        Files.createDirectories(directory);
+        if (mapped != null)
+        {
+            for (Entry entry : entries.values())
+            {
+                entry.load(mapped);
+            }
+            mapped = null;
+        }
+        Path temporary = Files.createTempFile(directory, FILE_NAME, ".tmp");
+        try
+        {
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024)))
+            {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(entries.size());
+                for (Map.Entry<ByteBuffer, Entry> entry : entries.entrySet())
+                {
+                    output.write(entry.getKey().array());
+                    output.writeInt(entry.getValue().length);
+                }
+                WritableByteChannel channel = Channels.newChannel(output);
+                for (Entry entry : entries.values())
+                {
+                    ByteBuffer record = entry.record(mapped);
+                    while (record.hasRemaining())
+                    {
+                        channel.write(record);
+                    }
+                }
+            }
+            try
+            {
+                Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static class Entry
+    {
+        private final int offset;
+        private final int length;
+        private byte[] record;
+        private TypeModel model;
+
+        Entry(int offset, int length, byte[] record)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.record = record;
+        }
+
+        /**
+         * Copies the record out of the mapped file, so the entry outlives the mapping.
+         */
+        void load(ByteBuffer mapped)
+        {
+            if (record == null)
+            {
+                record = new byte[length];
+                record(mapped).get(record);
+            }
+        }
+
+        /**
+         * @return the encoded model, from memory for new entries or as a slice of the mapped file
+         */
+        ByteBuffer record(ByteBuffer mapped)
+        {
+            if (record != null)
+            {
+                return ByteBuffer.wrap(record);
+            }
+            ByteBuffer slice = mapped.duplicate();
+            // through Buffer, whose limit(int) and position(int) are the only overloads on Java 8
+            ((Buffer) slice).limit(offset + length);
+            ((Buffer) slice).position(offset);
+            return slice;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.ModelCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes everything a package diagram is rendered from: its extracted model, which holds the package types, the
+ * interfaces pulled in by their hierarchy and the hierarchy edges, plus the options that shape the output.
+ */
+public class PackageFingerprint
+{
+    private final String outputSignature;
+
+    public PackageFingerprint(String outputSignature)
+    {
+        this.outputSignature = outputSignature;
+    }
+
+    public String of(DiagramModel diagram)
+    {
+        MessageDigest digest = newDigest();
+        digest.update(outputSignature.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(ModelCodec.encode(diagram));
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
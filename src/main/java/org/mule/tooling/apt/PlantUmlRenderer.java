@@ -0,0 +1,177 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+
+/**
+ * Writes models as PlantUML. Reads nothing but the models, so it is safe to call from any thread.
+ */
+public class PlantUmlRenderer implements DiagramRenderer
+{
+    /**
+     * Symbol of each {@link Modifiers} bit, by bit position.
+     */
+    private static final String[] MEMBER_MODIFIERS = {"+", "#", "-", "{abstract}", "~", "{static}", "", "transient", "volatile",
+                                                      "synchronized", "native", "strictfp"};
+
+    private final boolean hideMembers;
+
+    public PlantUmlRenderer()
+    {
+        this(true);
+    }
+
+    /**
+     * @param hideMembers whether diagrams end with {@code hide members}, so PlantUML only draws type names
+     */
+    public PlantUmlRenderer(boolean hideMembers)
+    {
+        this.hideMembers = hideMembers;
+    }
+
+    public static String diagramName(String packageName)
+    {
+        return packageName.replace(".", "-") + "-class-diagram";
+    }
+
+    @Override public String getExtension()
+    {
+        return ".adoc";
+    }
+
+    /**
+     * Writes a package diagram: its types, each flushed as one block, then its edges and relations. A diagram of no
+     * package, such as the whole project graph, is not wrapped in a package.
+     */
+    @Override public void render(DiagramModel diagram, DiagramWriter writer) throws IOException
+    {
+        boolean inPackage = !diagram.getPackageName().isEmpty();
+        writer.write("[plantuml, " + diagram.getName() + ", svg]\n" +
+                     "....\n" +
+                     (inPackage ? "package " + diagram.getPackageName() + " {\n" : ""));
+        for (TypeModel type : diagram.getTypes())
+        {
+            renderType(type, writer.block());
+            writer.flushBlock();
+        }
+        StringBuilder block = writer.block();
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            renderEdge(diagram.getEdgeParent(i), diagram.getEdgeChild(i), block);
+        }
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            renderRelation(diagram.getRelationSource(i), diagram.getRelationTarget(i), diagram.getRelationKind(i), block);
+        }
+        writer.write("\n" +
+                     (inPackage ? "}\n" : "") +
+                     footer());
+    }
+
+    /**
+     * The end of every diagram, after its types and edges.
+     */
+    public String footer()
+    {
+        return (hideMembers ? "hide members\n" : "") + "....";
+    }
+
+    /**
+     * Appends the type block, followed by the blocks of its nested types.
+     */
+    public void renderType(TypeModel type, StringBuilder o)
+    {
+        o.append(type.getKind().getKeyword()).append(' ').append(type.getName()).append("{\n");
+        boolean methodModifiers = !type.getKind().isInterface();
+        for (MemberModel member : type.getMembers())
+        {
+            renderMember(member, !member.isMethod() || methodModifiers, o);
+        }
+        o.append("}\n");
+        for (TypeModel nestedType : type.getNestedTypes())
+        {
+            renderType(nestedType, o);
+        }
+    }
+
+    /**
+     * @param withModifiers whether modifiers are shown; they are left out for the methods of interfaces
+     */
+    public void renderMember(MemberModel member, boolean withModifiers, StringBuilder o)
+    {
+        o.append('\t');
+        if (withModifiers)
+        {
+            appendModifiers(member.getModifiers(), o);
+        }
+        o.append(member.getName());
+        if (!member.isMethod())
+        {
+            o.append(": ").append(member.getType()).append('\n');
+            return;
+        }
+        o.append('(');
+        for (int i = 0; i < member.getParameterCount(); i++)
+        {
+            if (i > 0)
+            {
+                o.append(',');
+            }
+            o.append(member.getParameterType(i)).append(' ').append(member.getParameterName(i));
+        }
+        o.append("): ").append(member.getType()).append('\n');
+    }
+
+    public void renderEdge(String parent, String child, StringBuilder o)
+    {
+        o.append(parent).append("<|--").append(child).append('\n');
+    }
+
+    /**
+     * Draws associations as {@code -->} and dependencies as {@code ..>}.
+     */
+    public void renderRelation(String source, String target, Relation kind, StringBuilder o)
+    {
+        o.append(source).append(kind == Relation.ASSOCIATION ? "-->" : "..>").append(target).append('\n');
+    }
+
+    public static void appendModifiers(int modifiers, StringBuilder o)
+    {
+        boolean first = true;
+        for (int i = 0; i < Modifiers.COUNT; i++)
+        {
+            String symbol = MEMBER_MODIFIERS[i];
+            if ((modifiers & (1 << i)) == 0 || symbol.isEmpty())
+            {
+                continue;
+            }
+            if (!first)
+            {
+                o.append(' ');
+            }
+            o.append(symbol);
+            first = false;
+        }
+    }
+
+    /**
+     * PlantUML wrapped in an AsciiDoc block, the default format.
+     */
+    public static class Factory implements DiagramRendererFactory
+    {
+        @Override public String getName()
+        {
+            return "plantuml";
+        }
+
+        @Override public DiagramRenderer createRenderer(boolean hideMembers)
+        {
+            return new PlantUmlRenderer(hideMembers);
+        }
+    }
+}
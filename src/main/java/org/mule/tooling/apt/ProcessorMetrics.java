@@ -0,0 +1,187 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in timings and counters of the processor. A disabled instance ignores every call, so call sites do not need to
+ * check whether metrics were requested.
+ */
+public class ProcessorMetrics
+{
+    public enum Phase
+    {
+        COLLECT, VISIT, HIERARCHY, WRITE
+    }
+
+    public enum Counter
+    {
+        TYPES, MEMBERS, EDGES, BYTES_WRITTEN, DIAGRAMS_WRITTEN, DIAGRAMS_SKIPPED, MODEL_CACHE_HITS, MODEL_CACHE_MISSES,
+        MODEL_CACHE_EVICTIONS, DIAGRAMS_PARTITIONED
+    }
+
+    private static final ProcessorMetrics DISABLED = new ProcessorMetrics(false);
+
+    private final boolean enabled;
+    private final Map<Phase, AtomicLong> nanos = new EnumMap<>(Phase.class);
+    private final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+
+    private ProcessorMetrics(boolean enabled)
+    {
+        this.enabled = enabled;
+        for (Phase phase : Phase.values())
+        {
+            nanos.put(phase, new AtomicLong());
+        }
+        for (Counter counter : Counter.values())
+        {
+            counters.put(counter, new AtomicLong());
+        }
+    }
+
+    public static ProcessorMetrics create(boolean enabled)
+    {
+        return enabled ? new ProcessorMetrics(true) : DISABLED;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @return the start timestamp to pass to {@link #stop(Phase, long)}
+     */
+    public long start()
+    {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void stop(Phase phase, long start)
+    {
+        if (enabled)
+        {
+            nanos.get(phase).addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public void increment(Counter counter)
+    {
+        add(counter, 1L);
+    }
+
+    public void add(Counter counter, long amount)
+    {
+        if (enabled)
+        {
+            counters.get(counter).addAndGet(amount);
+        }
+    }
+
+    /**
+     * Counts the types and members of an extracted diagram, and its edges and relations.
+     */
+    public void addDiagram(DiagramModel diagram)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        for (TypeModel type : diagram.getTypes())
+        {
+            addType(type);
+        }
+        add(Counter.EDGES, diagram.getEdgeCount() + diagram.getRelationCount());
+    }
+
+    /**
+     * Counts an extracted type and its members, nested types included.
+     */
+    public void addType(TypeModel type)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        increment(Counter.TYPES);
+        add(Counter.MEMBERS, type.getMembers().size());
+        for (TypeModel nestedType : type.getNestedTypes())
+        {
+            addType(nestedType);
+        }
+    }
+
+    public long get(Phase phase)
+    {
+        return nanos.get(phase).get();
+    }
+
+    public long get(Counter counter)
+    {
+        return counters.get(counter).get();
+    }
+
+    public String toJson(HierarchyIndex hierarchyIndex, TypeBlockCache typeBlocks)
+    {
+        StringBuilder json = new StringBuilder("{\n  \"phasesMillis\": {");
+        String separator = "\n";
+        for (Phase phase : Phase.values())
+        {
+            json.append(separator).append("    \"").append(key(phase)).append("\": ").append(millis(get(phase)));
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Counter counter : Counter.values())
+        {
+            json.append(separator).append("    \"").append(key(counter)).append("\": ").append(get(counter));
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"hierarchyIndex\": {\n")
+            .append("    \"hits\": ").append(hierarchyIndex.getHits()).append(",\n")
+            .append("    \"misses\": ").append(hierarchyIndex.getMisses()).append("\n  },\n  \"typeBlockCache\": {\n")
+            .append("    \"hits\": ").append(typeBlocks.getHits()).append(",\n")
+            .append("    \"misses\": ").append(typeBlocks.getMisses()).append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    public String toSummary()
+    {
+        return String.format(Locale.ROOT, "Diagrams: %d written, %d skipped; %d types, %d members, %d edges, %d bytes; "
+                                          + "collect %s ms, visit %s ms, hierarchy %s ms, write %s ms",
+                             get(Counter.DIAGRAMS_WRITTEN), get(Counter.DIAGRAMS_SKIPPED), get(Counter.TYPES),
+                             get(Counter.MEMBERS), get(Counter.EDGES), get(Counter.BYTES_WRITTEN),
+                             millis(get(Phase.COLLECT)), millis(get(Phase.VISIT)), millis(get(Phase.HIERARCHY)),
+                             millis(get(Phase.WRITE)));
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static String key(Enum<?> value)
+    {
+        StringBuilder key = new StringBuilder();
+        boolean upper = false;
+        for (char c : value.name().toLowerCase(Locale.ROOT).toCharArray())
+        {
+            if (c == '_')
+            {
+                upper = true;
+            }
+            else
+            {
+                key.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return key.toString();
+    }
+}
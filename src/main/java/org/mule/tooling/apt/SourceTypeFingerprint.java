@@ -0,0 +1,191 @@
+package org.mule.tooling.apt;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.JavaFileObject;
+
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+
+/**
+ * Fingerprint of a type compiled from source: a SHA-256 of its qualified name, of the text of its source file, of
+ * the names its supertypes resolved to, and of the extraction settings.
+ * The text is hashed once per file, however many types it declares, and no enclosed element is read, so a lookup
+ * costs far less than the extraction it saves. The supertype names make a type whose supertypes now resolve
+ * elsewhere, or at all, miss the cache although its text did not change. Types read from class files have no source
+ * and no fingerprint, nor do types with a supertype that does not resolve; member types are checked with
+ * {@link #isResolved(TypeElement)} when a model is extracted, so a model of an erroneous type is never cached.
+ */
+public class SourceTypeFingerprint
+{
+    private static final int FORMAT = 3;
+
+    private final Trees trees;
+    private final byte[] settings;
+    private final Map<URI, byte[]> sources = new HashMap<>();
+
+    /**
+     * @param settings what else shapes a type's model, such as the {@link DiagramScope#getSignature() scope}
+     * @throws IllegalArgumentException when the processor does not run in javac, whose tree API locates sources
+     */
+    public SourceTypeFingerprint(ProcessingEnvironment processingEnv, String settings)
+    {
+        this.trees = Trees.instance(processingEnv);
+        this.settings = settings.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the {@link ModelCache#KEY_SIZE} byte fingerprint, or {@code null} when the type has no source or a
+     *         supertype that does not resolve
+     */
+    public byte[] of(TypeElement typeElement)
+    {
+        TreePath path = trees.getPath(typeElement);
+        return path == null ? null : of(path.getCompilationUnit().getSourceFile(), typeElement);
+    }
+
+    byte[] of(JavaFileObject sourceFile, TypeElement typeElement)
+    {
+        byte[] source = sourceDigest(sourceFile);
+        if (source == null)
+        {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        digest.update((byte) FORMAT);
+        digest.update(settings);
+        digest.update((byte) 0);
+        digest.update(source);
+        digest.update(typeElement.getQualifiedName().toString().getBytes(StandardCharsets.UTF_8));
+        if (!addSupertype(digest, typeElement.getSuperclass()))
+        {
+            return null;
+        }
+        for (TypeMirror interfaceType : typeElement.getInterfaces())
+        {
+            if (!addSupertype(digest, interfaceType))
+            {
+                return null;
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads every enclosed element, so it is only worth calling where they are read anyway, as when a model is
+     * extracted.
+     *
+     * @return whether every supertype and member type of the type, and of its nested types, resolves
+     */
+    public static boolean isResolved(TypeElement typeElement)
+    {
+        if (isErroneous(typeElement.getSuperclass()) || anyErroneous(typeElement.getInterfaces()))
+        {
+            return false;
+        }
+        for (Element enclosed : typeElement.getEnclosedElements())
+        {
+            boolean resolved = enclosed instanceof TypeElement ? isResolved((TypeElement) enclosed) : !isErroneous(enclosed.asType());
+            if (!resolved)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean addSupertype(MessageDigest digest, TypeMirror type)
+    {
+        if (isErroneous(type))
+        {
+            return false;
+        }
+        digest.update((byte) 0);
+        digest.update(type.toString().getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Type variables are not followed, their bounds may refer back to them.
+     */
+    private static boolean isErroneous(TypeMirror type)
+    {
+        switch (type.getKind())
+        {
+        case ERROR:
+            return true;
+        case ARRAY:
+            return isErroneous(((ArrayType) type).getComponentType());
+        case DECLARED:
+            return anyErroneous(((DeclaredType) type).getTypeArguments());
+        case WILDCARD:
+            WildcardType wildcard = (WildcardType) type;
+            return wildcard.getExtendsBound() != null && isErroneous(wildcard.getExtendsBound()) ||
+                   wildcard.getSuperBound() != null && isErroneous(wildcard.getSuperBound());
+        case EXECUTABLE:
+            ExecutableType executable = (ExecutableType) type;
+            return isErroneous(executable.getReturnType()) || anyErroneous(executable.getParameterTypes()) ||
+                   anyErroneous(executable.getThrownTypes());
+        default:
+            return false;
+        }
+    }
+
+    private static boolean anyErroneous(List<? extends TypeMirror> types)
+    {
+        for (TypeMirror type : types)
+        {
+            if (isErroneous(type))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] sourceDigest(JavaFileObject sourceFile)
+    {
+        byte[] digest = sources.get(sourceFile.toUri());
+        if (digest != null)
+        {
+            return digest;
+        }
+        try
+        {
+            digest = newDigest().digest(sourceFile.getCharContent(true).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        sources.put(sourceFile.toUri(), digest);
+        return digest;
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.mule.tooling.apt;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only UTF-8 text in a temporary file, deleted on close. Text is encoded through one direct buffer and can be
+ * copied out with {@link FileChannel#transferTo}, so its size never shows up on the heap.
+ */
+public class SpillFile implements AutoCloseable
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    public SpillFile(String prefix) throws IOException
+    {
+        Path file = Files.createTempFile(prefix, ".spill");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    public void append(CharSequence text) throws IOException
+    {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true)
+        {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow())
+            {
+                drain();
+            }
+            else if (result.isUnderflow())
+            {
+                break;
+            }
+            else
+            {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow())
+        {
+            drain();
+        }
+    }
+
+    /**
+     * Copies everything appended so far to {@code target}.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException
+    {
+        drain();
+        long size = channel.size();
+        long position = 0;
+        while (position < size)
+        {
+            position += channel.transferTo(position, size - position, target);
+        }
+        return size;
+    }
+
+    private void drain() throws IOException
+    {
+        // through Buffer, whose flip() and clear() are the only overloads on Java 8
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    @Override public void close() throws IOException
+    {
+        channel.close();
+    }
+}
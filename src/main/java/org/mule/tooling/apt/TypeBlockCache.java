@@ -0,0 +1,59 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Models of types that are pulled into package diagrams by their hierarchy without belonging to the package, keyed
+ * by qualified name. Each such type is extracted once per compilation, however many packages implement it.
+ */
+public class TypeBlockCache
+{
+    private final TypeModelExtractor extractor;
+    private final boolean stubs;
+    private final ConcurrentMap<String, TypeModel> models = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param stubs whether types are extracted without members
+     */
+    public TypeBlockCache(TypeModelExtractor extractor, boolean stubs)
+    {
+        this.extractor = extractor;
+        this.stubs = stubs;
+    }
+
+    /**
+     * Extracts missing models, so it must be called on the javac thread.
+     */
+    public TypeModel get(TypeElement typeElement)
+    {
+        String key = typeElement.getQualifiedName().toString();
+        TypeModel model = models.get(key);
+        if (model != null)
+        {
+            hits.incrementAndGet();
+            return model;
+        }
+        misses.incrementAndGet();
+        model = stubs ? extractor.extractStub(typeElement) : extractor.extract(typeElement);
+        TypeModel previous = models.putIfAbsent(key, model);
+        return previous != null ? previous : model;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+}
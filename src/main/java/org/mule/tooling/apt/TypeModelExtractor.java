@@ -0,0 +1,205 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Reads a {@link TypeElement} into a {@link TypeModel}. This is the only place diagrams read compiler symbols from,
+ * so it must run on the javac thread; the models it returns can be rendered anywhere.
+ */
+public class TypeModelExtractor
+{
+    private static final String OBJECT = "java.lang.Object";
+
+    private final Interner interner;
+    private final DiagramScope scope;
+
+    public TypeModelExtractor(Interner interner)
+    {
+        this(interner, DiagramScope.all());
+    }
+
+    /**
+     * @param scope decides which enclosed elements are read at all; with {@link DiagramScope.Members#NONE} every type
+     *              is extracted as a stub
+     */
+    public TypeModelExtractor(Interner interner, DiagramScope scope)
+    {
+        this.interner = interner;
+        this.scope = scope;
+    }
+
+    public TypeModel extract(TypeElement typeElement)
+    {
+        if (scope.getMembers() == DiagramScope.Members.NONE)
+        {
+            return extractStub(typeElement);
+        }
+        List<MemberModel> members = new ArrayList<>();
+        List<TypeModel> nestedTypes = new ArrayList<>();
+        for (Element enclosed : typeElement.getEnclosedElements())
+        {
+            if (!scope.isVisible(enclosed.getModifiers()))
+            {
+                continue;
+            }
+            if (isType(enclosed))
+            {
+                if (!scope.excludes(((TypeElement) enclosed).getQualifiedName().toString()))
+                {
+                    nestedTypes.add(extract((TypeElement) enclosed));
+                }
+            }
+            else if (enclosed instanceof VariableElement)
+            {
+                members.add(extractField((VariableElement) enclosed));
+            }
+            else if (enclosed instanceof ExecutableElement)
+            {
+                members.add(extractMethod((ExecutableElement) enclosed));
+            }
+        }
+        return type(typeElement, members, nestedTypes);
+    }
+
+    /**
+     * @return the type without members or nested types; its enclosed elements are never read
+     */
+    public TypeModel extractStub(TypeElement typeElement)
+    {
+        return type(typeElement, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public MemberModel extractField(VariableElement e)
+    {
+        return MemberModel.field(interner.intern(e.getSimpleName().toString()), modifiers(e.getModifiers()), name(e.asType()));
+    }
+
+    public MemberModel extractMethod(ExecutableElement e)
+    {
+        List<? extends VariableElement> parameters = e.getParameters();
+        String[] parameterTypes = new String[parameters.size()];
+        String[] parameterNames = new String[parameters.size()];
+        for (int i = 0; i < parameterTypes.length; i++)
+        {
+            VariableElement parameter = parameters.get(i);
+            parameterTypes[i] = name(parameter.asType());
+            parameterNames[i] = interner.intern(parameter.getSimpleName().toString());
+        }
+        return MemberModel.method(interner.intern(e.getSimpleName().toString()), modifiers(e.getModifiers()), name(e.getReturnType()), parameterTypes, parameterNames);
+    }
+
+    private TypeModel type(TypeElement typeElement, List<MemberModel> members, List<TypeModel> nestedTypes)
+    {
+        String superclass = supertypeName(typeElement.getSuperclass());
+        List<String> interfaces = new ArrayList<>(typeElement.getInterfaces().size());
+        for (TypeMirror interfaceType : typeElement.getInterfaces())
+        {
+            interfaces.add(supertypeName(interfaceType));
+        }
+        return new TypeModel(interner.intern(typeElement.getQualifiedName().toString()), kind(typeElement.getKind()),
+                             OBJECT.equals(superclass) ? null : superclass, interfaces, members, nestedTypes);
+    }
+
+    /**
+     * @return the erased name hierarchy edges use, or {@code null} when there is no such supertype
+     */
+    private String supertypeName(TypeMirror supertype)
+    {
+        if (supertype == null || supertype.getKind() == TypeKind.NONE)
+        {
+            return null;
+        }
+        if (supertype.getKind() == TypeKind.DECLARED)
+        {
+            return interner.intern(((TypeElement) ((DeclaredType) supertype).asElement()).getQualifiedName().toString());
+        }
+        return name(supertype);
+    }
+
+    private String name(TypeMirror type)
+    {
+        return interner.intern(type.toString());
+    }
+
+    static boolean isType(Element element)
+    {
+        ElementKind kind = element.getKind();
+        return kind.isClass() || kind.isInterface();
+    }
+
+    private static TypeModel.Kind kind(ElementKind kind)
+    {
+        switch (kind)
+        {
+        case ANNOTATION_TYPE:
+            return TypeModel.Kind.ANNOTATION;
+        case INTERFACE:
+            return TypeModel.Kind.INTERFACE;
+        case ENUM:
+            return TypeModel.Kind.ENUM;
+        default:
+            return TypeModel.Kind.CLASS;
+        }
+    }
+
+    static int modifiers(Collection<Modifier> modifiers)
+    {
+        int bits = 0;
+        for (Modifier modifier : modifiers)
+        {
+            bits |= bit(modifier);
+        }
+        return bits;
+    }
+
+    private static int bit(Modifier modifier)
+    {
+        switch (modifier)
+        {
+        case PUBLIC:
+            return Modifiers.PUBLIC;
+        case PROTECTED:
+            return Modifiers.PROTECTED;
+        case PRIVATE:
+            return Modifiers.PRIVATE;
+        case ABSTRACT:
+            return Modifiers.ABSTRACT;
+        case DEFAULT:
+            return Modifiers.DEFAULT;
+        case STATIC:
+            return Modifiers.STATIC;
+        case FINAL:
+            return Modifiers.FINAL;
+        case TRANSIENT:
+            return Modifiers.TRANSIENT;
+        case VOLATILE:
+            return Modifiers.VOLATILE;
+        case SYNCHRONIZED:
+            return Modifiers.SYNCHRONIZED;
+        case NATIVE:
+            return Modifiers.NATIVE;
+        case STRICTFP:
+            return Modifiers.STRICTFP;
+        default:
+            return 0;
+        }
+    }
+}
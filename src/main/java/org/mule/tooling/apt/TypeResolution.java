@@ -0,0 +1,123 @@
+package org.mule.tooling.apt;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.TypeKindVisitor8;
+import javax.lang.model.util.Types;
+
+/**
+ * Answers the questions hierarchy resolution asks about supertypes, once per processor: well-known types are looked
+ * up when the service is created, the type visitor is a stateless singleton, and every answer is memoized per type
+ * mirror. Compiler symbols are read, so it is only used on the javac thread.
+ */
+public class TypeResolution
+{
+    private static final TypeKindVisitor8<Boolean, Void> HAS_TYPE_ARGUMENTS = new TypeKindVisitor8<Boolean, Void>(false)
+    {
+        @Override public Boolean visitDeclared(DeclaredType t, Void p)
+        {
+            return !t.getTypeArguments().isEmpty();
+        }
+    };
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeMirror objectType;
+    private final Map<TypeMirror, Supertype> supertypes = new IdentityHashMap<>();
+    private long hits;
+    private long misses;
+
+    public TypeResolution(Elements elements, Types types)
+    {
+        this.elements = elements;
+        this.types = types;
+        TypeElement object = elements.getTypeElement("java.lang.Object");
+        this.objectType = object == null ? null : object.asType();
+    }
+
+    public boolean isObject(TypeMirror type)
+    {
+        return classify(type).object;
+    }
+
+    /**
+     * @return the name hierarchy edges use for {@code type}: its element's name when it has type arguments, so
+     * {@code Comparator<T>} is drawn as {@code java.util.Comparator}
+     */
+    public String edgeName(TypeMirror type)
+    {
+        return classify(type).name;
+    }
+
+    /**
+     * @return the element of {@code type}, or {@code null} when it has none, such as an unresolved type
+     */
+    public TypeElement asTypeElement(TypeMirror type)
+    {
+        return classify(type).element;
+    }
+
+    /**
+     * @return the element named {@code qualifiedName} in the current round, or {@code null}
+     */
+    public TypeElement getTypeElement(String qualifiedName)
+    {
+        return elements.getTypeElement(qualifiedName);
+    }
+
+    /**
+     * Forgets the memoized answers, whose type mirrors belong to a previous round.
+     */
+    public void clear()
+    {
+        supertypes.clear();
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    private Supertype classify(TypeMirror type)
+    {
+        Supertype supertype = supertypes.get(type);
+        if (supertype != null)
+        {
+            hits++;
+            return supertype;
+        }
+        misses++;
+        Element element = type.getKind() == TypeKind.DECLARED || type.getKind() == TypeKind.ERROR ? types.asElement(type) : null;
+        boolean object = objectType != null && types.isSameType(type, objectType);
+        String name = element != null && type.accept(HAS_TYPE_ARGUMENTS, null) ? element.toString() : type.toString();
+        supertype = new Supertype(object, name, element instanceof TypeElement ? (TypeElement) element : null);
+        supertypes.put(type, supertype);
+        return supertype;
+    }
+
+    private static class Supertype
+    {
+        private final boolean object;
+        private final String name;
+        private final TypeElement element;
+
+        Supertype(boolean object, String name, TypeElement element)
+        {
+            this.object = object;
+            this.name = name;
+            this.element = element;
+        }
+    }
+}
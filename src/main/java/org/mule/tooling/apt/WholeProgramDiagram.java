@@ -0,0 +1,168 @@
+package org.mule.tooling.apt;
+
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.StandardLocation;
+
+/**
+ * One diagram for every type of the compilation. Type blocks and hierarchy edges are rendered as soon as a root type
+ * is seen and spilled to temporary files, so neither elements nor their models are kept past the round that produced
+ * them; the final file is stitched from the spill files when processing is over. Stubs of external types are kept
+ * until then, as a source type reached first through one of its implementors is drawn in full when it comes
+ * up as a root itself.
+ */
+public class WholeProgramDiagram implements AutoCloseable
+{
+    public static final String DIAGRAM_NAME = "whole-program-class-diagram";
+
+    private final TypeModelExtractor extractor;
+    private final HierarchyIndex hierarchyIndex;
+    private final ProcessorMetrics metrics;
+    private final DiagramScope scope;
+    private final PlantUmlRenderer renderer;
+    private final boolean externalTypeStubs;
+    private final SpillFile types;
+    private final SpillFile edges;
+    private final Set<String> renderedTypes = new HashSet<>();
+    private final Map<String, TypeModel> stubs = new TreeMap<>();
+    private final Set<String> renderedEdges = new HashSet<>();
+    private final StringBuilder block = new StringBuilder(8192);
+
+    public WholeProgramDiagram(TypeModelExtractor extractor, HierarchyIndex hierarchyIndex, ProcessorMetrics metrics, DiagramScope scope,
+                               boolean externalTypeStubs) throws IOException
+    {
+        this.extractor = extractor;
+        this.hierarchyIndex = hierarchyIndex;
+        this.metrics = metrics;
+        this.scope = scope;
+        this.renderer = new PlantUmlRenderer(scope.getMembers() != DiagramScope.Members.SHOWN);
+        this.externalTypeStubs = externalTypeStubs;
+        this.types = new SpillFile("diagram-types-");
+        this.edges = new SpillFile("diagram-edges-");
+    }
+
+    public void add(TypeElement typeElement) throws IOException
+    {
+        long start = metrics.start();
+        render(typeElement);
+        metrics.stop(ProcessorMetrics.Phase.VISIT, start);
+        if (ElementKind.ENUM.equals(typeElement.getKind()))
+        {
+            return;
+        }
+        start = metrics.start();
+        HierarchyIndex.Entry hierarchy = hierarchyIndex.get(typeElement);
+        for (TypeElement interfaceElement : hierarchyIndex.getInterfaces(hierarchy))
+        {
+            if (!scope.excludes(interfaceElement.getQualifiedName().toString()))
+            {
+                if (externalTypeStubs)
+                {
+                    addStub(interfaceElement);
+                }
+                else
+                {
+                    render(interfaceElement);
+                }
+            }
+        }
+        for (int i = 0; i < hierarchy.getEdgeCount(); i++)
+        {
+            if (scope.includesEdge(hierarchy.getEdgeParent(i), hierarchy.getEdgeChild(i)) && renderedEdges.add(hierarchy.getEdgeParent(i) + "<|--" + hierarchy.getEdgeChild(i)))
+            {
+                metrics.increment(ProcessorMetrics.Counter.EDGES);
+                renderer.renderEdge(hierarchy.getEdgeParent(i), hierarchy.getEdgeChild(i), block);
+            }
+        }
+        edges.append(block);
+        block.setLength(0);
+        metrics.stop(ProcessorMetrics.Phase.HIERARCHY, start);
+    }
+
+    private void render(TypeElement typeElement) throws IOException
+    {
+        String name = typeElement.getQualifiedName().toString();
+        if (!renderedTypes.add(name))
+        {
+            return;
+        }
+        stubs.remove(name);
+        TypeModel type = extractor.extract(typeElement);
+        metrics.addType(type);
+        renderer.renderType(type, block);
+        types.append(block);
+        block.setLength(0);
+    }
+
+    private void addStub(TypeElement typeElement)
+    {
+        String name = typeElement.getQualifiedName().toString();
+        if (!renderedTypes.contains(name) && !stubs.containsKey(name))
+        {
+            stubs.put(name, extractor.extractStub(typeElement));
+        }
+    }
+
+    public void write(Filer filer) throws IOException
+    {
+        long start = metrics.start();
+        for (TypeModel stub : stubs.values())
+        {
+            metrics.addType(stub);
+            renderer.renderType(stub, block);
+        }
+        types.append(block);
+        block.setLength(0);
+        stubs.clear();
+        try (OutputStream output = filer.createResource(StandardLocation.CLASS_OUTPUT, "", DIAGRAM_NAME + ".adoc").openOutputStream();
+             WritableByteChannel channel = Channels.newChannel(output))
+        {
+            long bytes = write(channel, "[plantuml, " + DIAGRAM_NAME + ", svg]\n" +
+                                        "....\n");
+            bytes += types.transferTo(channel);
+            bytes += write(channel, "\n");
+            bytes += edges.transferTo(channel);
+            bytes += write(channel, renderer.footer());
+            metrics.add(ProcessorMetrics.Counter.BYTES_WRITTEN, bytes);
+            metrics.increment(ProcessorMetrics.Counter.DIAGRAMS_WRITTEN);
+        }
+        metrics.stop(ProcessorMetrics.Phase.WRITE, start);
+    }
+
+    private static int write(WritableByteChannel channel, String text) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        int size = bytes.remaining();
+        while (bytes.hasRemaining())
+        {
+            channel.write(bytes);
+        }
+        return size;
+    }
+
+    @Override public void close() throws IOException
+    {
+        try
+        {
+            types.close();
+        }
+        finally
+        {
+            edges.close();
+        }
+    }
+}
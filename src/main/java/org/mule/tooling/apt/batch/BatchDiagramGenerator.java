@@ -0,0 +1,479 @@
+package org.mule.tooling.apt.batch;
+
+import org.mule.tooling.apt.DiagramGenerator;
+import org.mule.tooling.apt.JsonRenderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates the diagrams of many modules, such as the modules of a monorepo, in one JVM rather than one javac run
+ * per module, and lists them all in one {@value #INDEX_FILE}. Each module is compiled in-process with
+ * {@code -proc:only}, so its sources are parsed and entered but never attributed or generated, on a bounded pool of
+ * threads.
+ * <p>
+ * A javac compilation is confined to its thread, so modules share no symbols. What is shared is what javac allows:
+ * the compiler itself, the index of the JDK's own classes, which javac keeps once per JVM, and a file manager per
+ * thread, which keeps the jars it opened for the next module.
+ * <p>
+ * From the command line, every module is a Maven module directory, and the sources of all of them are on the source
+ * path of each, so modules can refer to each other before any of them is built.
+ */
+public class BatchDiagramGenerator
+{
+    public static final String INDEX_FILE = "diagram-index.json";
+
+    private final int threads;
+    private final List<String> javacOptions;
+    private final JavaCompiler compiler;
+
+    /**
+     * @param options the processor options, by name, as they would be passed to javac with {@code -A}
+     */
+    public BatchDiagramGenerator(int threads, Map<String, String> options)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+        }
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+        {
+            throw new IllegalStateException("No system Java compiler, run on a JDK");
+        }
+        this.threads = threads;
+        javacOptions = new ArrayList<>();
+        javacOptions.add("-proc:only");
+        for (Map.Entry<String, String> option : options.entrySet())
+        {
+            javacOptions.add("-A" + option.getKey() + "=" + option.getValue());
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path index = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> classPath = new ArrayList<>();
+        Map<String, String> options = new LinkedHashMap<>();
+        List<Path> moduleDirectories = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-i".equals(args[i]) && i + 1 < args.length)
+            {
+                index = Paths.get(args[++i]);
+            }
+            else if ("-t".equals(args[i]) && i + 1 < args.length)
+            {
+                threads = parseInt(args[++i], 0);
+            }
+            else if ("-cp".equals(args[i]) && i + 1 < args.length)
+            {
+                for (String entry : args[++i].split(File.pathSeparator))
+                {
+                    classPath.add(Paths.get(entry));
+                }
+            }
+            else if (args[i].startsWith("-A") && args[i].indexOf('=') > 2)
+            {
+                options.put(args[i].substring(2, args[i].indexOf('=')), args[i].substring(args[i].indexOf('=') + 1));
+            }
+            else
+            {
+                moduleDirectories.add(Paths.get(args[i]));
+            }
+        }
+        if (index == null || moduleDirectories.isEmpty() || threads < 1)
+        {
+            System.err.println("Usage: " + BatchDiagramGenerator.class.getName() +
+                               " -i <index directory> [-t <threads>] [-cp <class path>] [-A<option>=<value>]... <maven module directory>...");
+            System.exit(2);
+        }
+        List<Path> sourcePath = moduleDirectories.stream().map(Module::mavenSources).collect(Collectors.toList());
+        Path workingDirectory = Paths.get("").toAbsolutePath();
+        List<Module> modules = new ArrayList<>();
+        for (Path directory : moduleDirectories)
+        {
+            modules.add(Module.maven(workingDirectory, directory, sourcePath, classPath));
+        }
+        Result result = new BatchDiagramGenerator(threads, options).generate(modules, index);
+        for (ModuleResult module : result.getModules())
+        {
+            module.getErrors().forEach(x -> System.err.println(module.getName() + ": " + x));
+        }
+        System.out.println(result);
+    }
+
+    /**
+     * @return the value, or {@code invalid} when it is not a number
+     */
+    private static int parseInt(String value, int invalid)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return invalid;
+        }
+    }
+
+    /**
+     * Compiles every module and writes the index of their package diagrams to {@code indexDirectory}. A module that
+     * does not compile, or fails before it is compiled, is listed with its errors; the others are generated all the
+     * same.
+     *
+     * @throws IllegalArgumentException when two modules have the same name
+     */
+    public Result generate(List<Module> modules, Path indexDirectory) throws IOException
+    {
+        Set<String> names = new HashSet<>();
+        for (Module module : modules)
+        {
+            if (!names.add(module.getName()))
+            {
+                throw new IllegalArgumentException("Two modules are named " + module.getName());
+            }
+        }
+        long start = System.nanoTime();
+        int poolSize = Math.max(1, Math.min(threads, modules.size()));
+        BlockingQueue<StandardJavaFileManager> fileManagers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++)
+        {
+            fileManagers.add(compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        List<ModuleResult> results = new ArrayList<>(modules.size());
+        try
+        {
+            List<Future<ModuleResult>> tasks = new ArrayList<>(modules.size());
+            for (Module module : modules)
+            {
+                tasks.add(executor.submit(() ->
+                {
+                    StandardJavaFileManager fileManager = fileManagers.take();
+                    try
+                    {
+                        return compile(module, fileManager);
+                    }
+                    finally
+                    {
+                        fileManagers.add(fileManager);
+                    }
+                }));
+            }
+            for (Future<ModuleResult> task : tasks)
+            {
+                results.add(task.get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted generating module diagrams", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for (StandardJavaFileManager fileManager : fileManagers)
+            {
+                fileManager.close();
+            }
+        }
+        results.sort(Comparator.comparing(ModuleResult::getName));
+        writeIndex(results, indexDirectory);
+        return new Result(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * A module whose sources cannot be read or whose compilation fails with an exception gets it as its error, with
+     * the diagrams written before it.
+     */
+    private ModuleResult compile(Module module, StandardJavaFileManager fileManager)
+    {
+        long start = System.nanoTime();
+        List<File> sources = new ArrayList<>();
+        Map<String, List<String>> diagrams = new TreeMap<>();
+        List<String> errors = new ArrayList<>();
+        try
+        {
+            for (Path root : module.getSourceRoots())
+            {
+                if (!Files.isDirectory(root))
+                {
+                    continue;
+                }
+                try (Stream<Path> files = Files.walk(root))
+                {
+                    files.filter(x -> x.getFileName().toString().endsWith(".java") && Files.isRegularFile(x)).sorted().forEach(x -> sources.add(x.toFile()));
+                }
+            }
+            if (!sources.isEmpty())
+            {
+                Files.createDirectories(module.getOutputDirectory());
+                List<Path> sourcePath = new ArrayList<>(module.getSourceRoots());
+                module.getSourcePath().stream().filter(x -> !sourcePath.contains(x)).forEach(sourcePath::add);
+                fileManager.setLocation(StandardLocation.SOURCE_PATH, files(sourcePath));
+                fileManager.setLocation(StandardLocation.CLASS_PATH, files(module.getClassPath()));
+                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(module.getOutputDirectory().toFile()));
+                DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+                JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, javacOptions, null, fileManager.getJavaFileObjectsFromFiles(sources));
+                DiagramGenerator.Listener listener = new DiagramGenerator.Listener()
+                {
+                    @Override public void diagramFiles(String packageName, List<String> fileNames)
+                    {
+                        diagrams.put(packageName, fileNames);
+                    }
+                };
+                task.setProcessors(Collections.singletonList(new DiagramGenerator(null, listener)));
+                task.call();
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+                {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                    {
+                        errors.add(diagnostic.toString());
+                    }
+                }
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            errors.add(e.toString());
+        }
+        return new ModuleResult(module, diagrams, sources.size(), errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Lists every package diagram of every module, in module and package name order, with the paths of its files
+     * relative to the index, the parts of a split diagram included.
+     */
+    private void writeIndex(List<ModuleResult> results, Path indexDirectory) throws IOException
+    {
+        Path base = indexDirectory.toAbsolutePath().normalize();
+        StringBuilder o = new StringBuilder("{\n  \"modules\": [");
+        String moduleSeparator = "\n";
+        for (ModuleResult result : results)
+        {
+            o.append(moduleSeparator).append("    {\"name\": ");
+            JsonRenderer.string(result.getName(), o).append(", \"errors\": ").append(result.getErrors().size()).append(", \"diagrams\": [");
+            String diagramSeparator = "\n";
+            for (Map.Entry<String, List<String>> diagram : result.getDiagrams().entrySet())
+            {
+                Path directory = result.getOutputDirectory().toAbsolutePath().normalize();
+                if (!diagram.getKey().isEmpty())
+                {
+                    directory = directory.resolve(diagram.getKey().replace('.', File.separatorChar));
+                }
+                o.append(diagramSeparator).append("      {\"package\": ");
+                JsonRenderer.string(diagram.getKey(), o).append(", \"files\": [");
+                String fileSeparator = "";
+                for (String fileName : diagram.getValue())
+                {
+                    String file = base.relativize(directory.resolve(fileName)).toString().replace(File.separatorChar, '/');
+                    JsonRenderer.string(file, o.append(fileSeparator));
+                    fileSeparator = ", ";
+                }
+                o.append("]}");
+                diagramSeparator = ",\n";
+            }
+            o.append(result.getDiagrams().isEmpty() ? "]}" : "\n    ]}");
+            moduleSeparator = ",\n";
+        }
+        o.append(results.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        Files.createDirectories(base);
+        Files.write(base.resolve(INDEX_FILE), o.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<File> files(List<Path> paths)
+    {
+        return paths.stream().map(Path::toFile).collect(Collectors.toList());
+    }
+
+    /**
+     * The sources of one compilation and where its diagrams go.
+     */
+    public static class Module
+    {
+        private final String name;
+        private final List<Path> sourceRoots;
+        private final List<Path> sourcePath;
+        private final List<Path> classPath;
+        private final Path outputDirectory;
+
+        /**
+         * @param sourcePath source roots of other modules, whose types are read when the module's types refer to
+         *                   them but get no diagram, for dependencies that are not compiled yet
+         */
+        public Module(String name, List<Path> sourceRoots, List<Path> sourcePath, List<Path> classPath, Path outputDirectory)
+        {
+            this.name = name;
+            this.sourceRoots = sourceRoots;
+            this.sourcePath = sourcePath;
+            this.classPath = classPath;
+            this.outputDirectory = outputDirectory;
+        }
+
+        /**
+         * A module with the Maven layout: sources in {@code src/main/java}, diagrams written to
+         * {@code target/classes}, named after its path relative to {@code root}, so {@code a/core} and {@code b/core}
+         * stay apart.
+         */
+        public static Module maven(Path root, Path directory, List<Path> sourcePath, List<Path> classPath)
+        {
+            Path absolute = directory.toAbsolutePath().normalize();
+            Path relative = root.toAbsolutePath().normalize().relativize(absolute);
+            String name = relative.toString().isEmpty() ? absolute.getFileName().toString() : relative.toString().replace(File.separatorChar, '/');
+            return new Module(name, Collections.singletonList(mavenSources(absolute)), sourcePath, classPath, absolute.resolve(Paths.get("target", "classes")));
+        }
+
+        static Path mavenSources(Path directory)
+        {
+            return directory.toAbsolutePath().normalize().resolve(Paths.get("src", "main", "java"));
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public List<Path> getSourceRoots()
+        {
+            return sourceRoots;
+        }
+
+        public List<Path> getSourcePath()
+        {
+            return sourcePath;
+        }
+
+        public List<Path> getClassPath()
+        {
+            return classPath;
+        }
+
+        public Path getOutputDirectory()
+        {
+            return outputDirectory;
+        }
+    }
+
+    public static class ModuleResult
+    {
+        private final Module module;
+        private final Map<String, List<String>> diagrams;
+        private final int sourceFiles;
+        private final List<String> errors;
+        private final long millis;
+
+        ModuleResult(Module module, Map<String, List<String>> diagrams, int sourceFiles, List<String> errors, long millis)
+        {
+            this.module = module;
+            this.diagrams = Collections.unmodifiableMap(diagrams);
+            this.sourceFiles = sourceFiles;
+            this.errors = Collections.unmodifiableList(errors);
+            this.millis = millis;
+        }
+
+        public String getName()
+        {
+            return module.getName();
+        }
+
+        public Path getOutputDirectory()
+        {
+            return module.getOutputDirectory();
+        }
+
+        /**
+         * @return the file names of each package diagram, in the package's output directory, by package name
+         */
+        public Map<String, List<String>> getDiagrams()
+        {
+            return diagrams;
+        }
+
+        public int getSourceFiles()
+        {
+            return sourceFiles;
+        }
+
+        public List<String> getErrors()
+        {
+            return errors;
+        }
+
+        public long getMillis()
+        {
+            return millis;
+        }
+    }
+
+    public static class Result
+    {
+        private final List<ModuleResult> modules;
+        private final long millis;
+
+        Result(List<ModuleResult> modules, long millis)
+        {
+            this.modules = Collections.unmodifiableList(modules);
+            this.millis = millis;
+        }
+
+        /**
+         * @return the result of each module, in name order
+         */
+        public List<ModuleResult> getModules()
+        {
+            return modules;
+        }
+
+        public long getMillis()
+        {
+            return millis;
+        }
+
+        @Override public String toString()
+        {
+            int diagrams = modules.stream().mapToInt(x -> x.getDiagrams().size()).sum();
+            long failed = modules.stream().filter(x -> !x.getErrors().isEmpty()).count();
+            return "Generated " + diagrams + " package diagrams of " + modules.size() + " modules in " + millis + " ms" +
+                   (failed == 0 ? "" : ", " + failed + " modules with errors");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.mule.tooling.apt.bytecode;
+
+import org.mule.tooling.apt.DiagramWriter;
+import org.mule.tooling.apt.PlantUmlRenderer;
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates the same package diagrams as {@link org.mule.tooling.apt.DiagramGenerator} from already compiled jars
+ * and class directories, without running a compiler. Diagrams are written under the output directory with the
+ * layout the processor uses in {@code CLASS_OUTPUT}.
+ * <p>
+ * Class files carry erased types, so generic type arguments are not shown, and parameter names are only known when
+ * the classes were compiled with {@code -parameters}.
+ */
+public class BytecodeDiagramGenerator
+{
+    private final ClassPathScanner scanner;
+
+    public BytecodeDiagramGenerator(int threads)
+    {
+        this.scanner = new ClassPathScanner(threads, new Interner());
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-o".equals(args[i]) && i + 1 < args.length)
+            {
+                output = Paths.get(args[++i]);
+            }
+            else if ("-t".equals(args[i]) && i + 1 < args.length)
+            {
+                threads = parseInt(args[++i], 0);
+            }
+            else
+            {
+                roots.add(Paths.get(args[i]));
+            }
+        }
+        if (output == null || roots.isEmpty() || threads < 1)
+        {
+            System.err.println("Usage: " + BytecodeDiagramGenerator.class.getName() + " -o <output directory> [-t <threads>] <jar or directory>...");
+            System.exit(2);
+        }
+        new BytecodeDiagramGenerator(threads).generate(roots, output);
+    }
+
+    /**
+     * @return the value, or {@code invalid} when it is not a number
+     */
+    private static int parseInt(String value, int invalid)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return invalid;
+        }
+    }
+
+    /**
+     * @return the number of package diagrams written
+     */
+    public int generate(List<Path> roots, Path outputDirectory) throws IOException
+    {
+        Collection<ClassFile> classes = scanner.scan(roots);
+        Map<String, ClassFile> scanned = new HashMap<>();
+        Map<String, List<ClassFile>> members = new HashMap<>();
+        for (ClassFile classFile : classes)
+        {
+            scanned.put(classFile.getName(), classFile);
+            if (classFile.getOuterName() != null)
+            {
+                members.computeIfAbsent(classFile.getOuterName(), x -> new ArrayList<>()).add(classFile);
+            }
+        }
+        Map<String, TypeModel> byName = new HashMap<>();
+        Map<String, List<TypeModel>> packages = new TreeMap<>();
+        for (ClassFile classFile : classes)
+        {
+            if (classFile.getOuterName() == null || !scanned.containsKey(classFile.getOuterName()))
+            {
+                TypeModel model = nest(classFile, members, byName);
+                packages.computeIfAbsent(classFile.getPackageName(), x -> new ArrayList<>()).add(model);
+            }
+        }
+        Hierarchy hierarchy = new Hierarchy(byName);
+        PlantUmlRenderer renderer = new PlantUmlRenderer();
+        for (Map.Entry<String, List<TypeModel>> entry : packages.entrySet())
+        {
+            String packageName = entry.getKey();
+            DiagramModel diagram = diagram(packageName, entry.getValue(), hierarchy);
+            Path directory = packageName.isEmpty() ? outputDirectory : outputDirectory.resolve(packageName.replace('.', '/'));
+            Files.createDirectories(directory);
+            try (DiagramWriter writer = new DiagramWriter(Files.newBufferedWriter(directory.resolve(diagram.getName() + ".adoc"), StandardCharsets.UTF_8)))
+            {
+                renderer.render(diagram, writer);
+            }
+        }
+        return packages.size();
+    }
+
+    /**
+     * @return the class with its member classes nested in it, as the processor models nested types; every model
+     * built is registered under its name
+     */
+    private static TypeModel nest(ClassFile classFile, Map<String, List<ClassFile>> members, Map<String, TypeModel> byName)
+    {
+        TypeModel model = classFile.getModel();
+        List<ClassFile> memberClasses = members.get(classFile.getName());
+        if (memberClasses != null)
+        {
+            memberClasses.sort(Comparator.comparing(ClassFile::getName));
+            List<TypeModel> nestedTypes = new ArrayList<>(memberClasses.size());
+            for (ClassFile memberClass : memberClasses)
+            {
+                nestedTypes.add(nest(memberClass, members, byName));
+            }
+            model = new TypeModel(model.getName(), model.getKind(), model.getSuperclass(), model.getInterfaces(), model.getMembers(), nestedTypes);
+        }
+        byName.put(model.getName(), model);
+        return model;
+    }
+
+    static DiagramModel diagram(String packageName, List<TypeModel> types, Hierarchy hierarchy)
+    {
+        types.sort(Comparator.comparing(TypeModel::getName));
+        DiagramModel.Builder diagram = DiagramModel.builder(PlantUmlRenderer.diagramName(packageName), packageName);
+        for (TypeModel type : types)
+        {
+            diagram.addType(type);
+        }
+        for (TypeModel type : types)
+        {
+            if (type.getKind() == TypeModel.Kind.ENUM)
+            {
+                continue;
+            }
+            for (String interfaceName : hierarchy.interfaces(type))
+            {
+                TypeModel interfaceType = hierarchy.get(interfaceName);
+                if (interfaceType != null)
+                {
+                    diagram.addType(interfaceType);
+                }
+            }
+            for (String[] edge : hierarchy.edges(type))
+            {
+                diagram.addEdge(edge[0], edge[1]);
+            }
+        }
+        return diagram.build();
+    }
+
+    /**
+     * Supertype closure over the scanned classes, memoized per class. Supertypes that were not scanned end the walk
+     * but still get their edge.
+     */
+    static class Hierarchy
+    {
+        private final Map<String, TypeModel> classes;
+        private final Map<String, List<String[]>> edges = new HashMap<>();
+        private final Map<String, Set<String>> interfaces = new HashMap<>();
+
+        Hierarchy(Map<String, TypeModel> classes)
+        {
+            this.classes = classes;
+        }
+
+        TypeModel get(String name)
+        {
+            return classes.get(name);
+        }
+
+        /**
+         * @return {@code {parent, child}} pairs, in walk order
+         */
+        List<String[]> edges(TypeModel type)
+        {
+            resolve(type);
+            return edges.get(type.getName());
+        }
+
+        Set<String> interfaces(TypeModel type)
+        {
+            resolve(type);
+            return interfaces.get(type.getName());
+        }
+
+        private void resolve(TypeModel type)
+        {
+            if (edges.containsKey(type.getName()))
+            {
+                return;
+            }
+            Map<String, String[]> typeEdges = new LinkedHashMap<>();
+            Set<String> typeInterfaces = new LinkedHashSet<>();
+            if (type.getSuperclass() != null)
+            {
+                addEdge(typeEdges, type.getSuperclass(), type.getName());
+                inherit(type.getSuperclass(), typeEdges, typeInterfaces);
+            }
+            for (String interfaceName : type.getInterfaces())
+            {
+                addEdge(typeEdges, interfaceName, type.getName());
+                typeInterfaces.add(interfaceName);
+                inherit(interfaceName, typeEdges, typeInterfaces);
+            }
+            edges.put(type.getName(), new ArrayList<>(typeEdges.values()));
+            interfaces.put(type.getName(), typeInterfaces);
+        }
+
+        private void inherit(String supertype, Map<String, String[]> typeEdges, Set<String> typeInterfaces)
+        {
+            TypeModel parent = classes.get(supertype);
+            if (parent != null)
+            {
+                for (String[] edge : edges(parent))
+                {
+                    addEdge(typeEdges, edge[0], edge[1]);
+                }
+                typeInterfaces.addAll(interfaces(parent));
+            }
+        }
+
+        private static void addEdge(Map<String, String[]> typeEdges, String parent, String child)
+        {
+            typeEdges.putIfAbsent(parent + "<|--" + child, new String[] {parent, child});
+        }
+    }
+}
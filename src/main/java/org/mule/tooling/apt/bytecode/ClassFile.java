@@ -0,0 +1,394 @@
+package org.mule.tooling.apt.bytecode;
+
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a diagram needs from a {@code .class} file: its name, kind, supertypes, fields and methods. Parsed straight
+ * from the class file format, reading only the constant pool entries that are referenced.
+ */
+public class ClassFile
+{
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SYNCHRONIZED = 0x0020;
+    private static final int ACC_VOLATILE = 0x0040;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_TRANSIENT = 0x0080;
+    private static final int ACC_NATIVE = 0x0100;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_STRICT = 0x0800;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private final String binaryName;
+    private final String packageName;
+    private final String outerName;
+    private final TypeModel model;
+
+    private ClassFile(String binaryName, String packageName, String outerName, TypeModel model)
+    {
+        this.binaryName = binaryName;
+        this.packageName = packageName;
+        this.outerName = outerName;
+        this.model = model;
+    }
+
+    /**
+     * @param interner shared by every class of a scan, whatever thread parses it
+     * @return the class, or {@code null} for module descriptors, synthetic, anonymous and local classes, which have
+     * no place in a diagram
+     */
+    public static ClassFile parse(ByteBuffer buffer, Interner interner)
+    {
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a class file");
+        }
+        buffer.getShort();
+        buffer.getShort();
+        ConstantPool pool = new ConstantPool(buffer);
+        int access = buffer.getShort() & 0xFFFF;
+        String internalName = pool.className(buffer.getShort() & 0xFFFF);
+        int superIndex = buffer.getShort() & 0xFFFF;
+        String superName = superIndex == 0 ? null : binaryToQualified(pool.className(superIndex));
+        int interfaceCount = buffer.getShort() & 0xFFFF;
+        List<String> interfaces = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++)
+        {
+            interfaces.add(interner.intern(binaryToQualified(pool.className(buffer.getShort() & 0xFFFF))));
+        }
+        List<MemberModel> members = new ArrayList<>();
+        readMembers(buffer, pool, false, interner, members);
+        readMembers(buffer, pool, true, interner, members);
+        String outerName = null;
+        int attributes = buffer.getShort() & 0xFFFF;
+        for (int a = 0; a < attributes; a++)
+        {
+            String attribute = pool.utf8(buffer.getShort() & 0xFFFF);
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            if ("InnerClasses".equals(attribute))
+            {
+                int classes = buffer.getShort() & 0xFFFF;
+                for (int c = 0; c < classes; c++)
+                {
+                    int innerIndex = buffer.getShort() & 0xFFFF;
+                    int outerIndex = buffer.getShort() & 0xFFFF;
+                    buffer.getShort();
+                    buffer.getShort();
+                    if (internalName.equals(pool.className(innerIndex)))
+                    {
+                        if (outerIndex == 0)
+                        {
+                            return null;
+                        }
+                        outerName = interner.intern(binaryToQualified(pool.className(outerIndex)));
+                    }
+                }
+            }
+            position(buffer, end);
+        }
+        if ((access & (ACC_MODULE | ACC_SYNTHETIC)) != 0)
+        {
+            return null;
+        }
+        if ("java.lang.Object".equals(superName) || (access & ACC_INTERFACE) != 0)
+        {
+            superName = null;
+        }
+        int packageEnd = internalName.lastIndexOf('/');
+        String packageName = packageEnd < 0 ? "" : internalName.substring(0, packageEnd).replace('/', '.');
+        TypeModel model = new TypeModel(interner.intern(binaryToQualified(internalName)), kindOf(access),
+                                        superName == null ? null : interner.intern(superName), interfaces, members,
+                                        Collections.emptyList());
+        return new ClassFile(internalName, interner.intern(packageName), outerName, model);
+    }
+
+    public String getName()
+    {
+        return model.getName();
+    }
+
+    /**
+     * @return the name in internal form, {@code com/foo/Outer$Inner}, which unlike {@link #getName()} tells a nested
+     * class from a top-level class of the same qualified name
+     */
+    public String getBinaryName()
+    {
+        return binaryName;
+    }
+
+    /**
+     * @return the qualified name of the class this one is a member of, or {@code null} for a top-level class
+     */
+    public String getOuterName()
+    {
+        return outerName;
+    }
+
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
+    /**
+     * The class as a diagram model: fields come before methods, and nested classes are separate class files, so the
+     * model has no nested types; {@link BytecodeDiagramGenerator} nests them by {@link #getOuterName()}.
+     */
+    public TypeModel getModel()
+    {
+        return model;
+    }
+
+    private static void readMembers(ByteBuffer buffer, ConstantPool pool, boolean methods, Interner interner, List<MemberModel> members)
+    {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++)
+        {
+            int access = buffer.getShort() & 0xFFFF;
+            String memberName = pool.utf8(buffer.getShort() & 0xFFFF);
+            String descriptor = pool.utf8(buffer.getShort() & 0xFFFF);
+            List<String> parameterNames = Collections.emptyList();
+            int attributes = buffer.getShort() & 0xFFFF;
+            for (int a = 0; a < attributes; a++)
+            {
+                String attribute = pool.utf8(buffer.getShort() & 0xFFFF);
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (methods && "MethodParameters".equals(attribute))
+                {
+                    int parameters = buffer.get() & 0xFF;
+                    parameterNames = new ArrayList<>(parameters);
+                    for (int p = 0; p < parameters; p++)
+                    {
+                        int nameIndex = buffer.getShort() & 0xFFFF;
+                        buffer.getShort();
+                        parameterNames.add(nameIndex == 0 ? "arg" + p : pool.utf8(nameIndex));
+                    }
+                }
+                position(buffer, end);
+            }
+            boolean synthetic = (access & ACC_SYNTHETIC) != 0 || (methods && (access & ACC_BRIDGE) != 0);
+            if (synthetic || "<clinit>".equals(memberName))
+            {
+                continue;
+            }
+            memberName = interner.intern(memberName);
+            if (!methods)
+            {
+                members.add(MemberModel.field(memberName, modifiers(access, false), interner.intern(Descriptors.fieldType(descriptor))));
+                continue;
+            }
+            List<String> parameterTypes = Descriptors.parameterTypes(descriptor);
+            String[] types = new String[parameterTypes.size()];
+            String[] names = new String[types.length];
+            for (int p = 0; p < types.length; p++)
+            {
+                types[p] = interner.intern(parameterTypes.get(p));
+                names[p] = p < parameterNames.size() ? interner.intern(parameterNames.get(p)) : "arg" + p;
+            }
+            members.add(MemberModel.method(memberName, modifiers(access, true), interner.intern(Descriptors.returnType(descriptor)), types, names));
+        }
+    }
+
+    private static int modifiers(int access, boolean method)
+    {
+        int modifiers = 0;
+        if ((access & ACC_PUBLIC) != 0)
+        {
+            modifiers |= Modifiers.PUBLIC;
+        }
+        if ((access & ACC_PROTECTED) != 0)
+        {
+            modifiers |= Modifiers.PROTECTED;
+        }
+        if ((access & ACC_PRIVATE) != 0)
+        {
+            modifiers |= Modifiers.PRIVATE;
+        }
+        if ((access & ACC_ABSTRACT) != 0)
+        {
+            modifiers |= Modifiers.ABSTRACT;
+        }
+        if ((access & ACC_STATIC) != 0)
+        {
+            modifiers |= Modifiers.STATIC;
+        }
+        if ((access & ACC_FINAL) != 0)
+        {
+            modifiers |= Modifiers.FINAL;
+        }
+        if (method)
+        {
+            if ((access & ACC_SYNCHRONIZED) != 0)
+            {
+                modifiers |= Modifiers.SYNCHRONIZED;
+            }
+            if ((access & ACC_NATIVE) != 0)
+            {
+                modifiers |= Modifiers.NATIVE;
+            }
+            if ((access & ACC_STRICT) != 0)
+            {
+                modifiers |= Modifiers.STRICTFP;
+            }
+        }
+        else
+        {
+            if ((access & ACC_TRANSIENT) != 0)
+            {
+                modifiers |= Modifiers.TRANSIENT;
+            }
+            if ((access & ACC_VOLATILE) != 0)
+            {
+                modifiers |= Modifiers.VOLATILE;
+            }
+        }
+        return modifiers;
+    }
+
+    private static TypeModel.Kind kindOf(int access)
+    {
+        if ((access & ACC_ANNOTATION) != 0)
+        {
+            return TypeModel.Kind.ANNOTATION;
+        }
+        if ((access & ACC_INTERFACE) != 0)
+        {
+            return TypeModel.Kind.INTERFACE;
+        }
+        if ((access & ACC_ENUM) != 0)
+        {
+            return TypeModel.Kind.ENUM;
+        }
+        return TypeModel.Kind.CLASS;
+    }
+
+    /**
+     * Through {@link Buffer}, whose {@code position(int)} is the only overload on Java 8.
+     */
+    private static void position(ByteBuffer buffer, int position)
+    {
+        ((Buffer) buffer).position(position);
+    }
+
+    static String binaryToQualified(String internalName)
+    {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+    private static class ConstantPool
+    {
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int FLOAT = 4;
+        private static final int LONG = 5;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int STRING = 8;
+        private static final int FIELD_REF = 9;
+        private static final int METHOD_REF = 10;
+        private static final int INTERFACE_METHOD_REF = 11;
+        private static final int NAME_AND_TYPE = 12;
+        private static final int METHOD_HANDLE = 15;
+        private static final int METHOD_TYPE = 16;
+        private static final int DYNAMIC = 17;
+        private static final int INVOKE_DYNAMIC = 18;
+        private static final int MODULE = 19;
+        private static final int PACKAGE = 20;
+
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final String[] strings;
+
+        ConstantPool(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+            int count = buffer.getShort() & 0xFFFF;
+            this.offsets = new int[count];
+            this.strings = new String[count];
+            for (int i = 1; i < count; i++)
+            {
+                offsets[i] = buffer.position();
+                int tag = buffer.get() & 0xFF;
+                switch (tag)
+                {
+                case UTF8:
+                    int length = buffer.getShort() & 0xFFFF;
+                    position(buffer, buffer.position() + length);
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    position(buffer, buffer.position() + 2);
+                    break;
+                case METHOD_HANDLE:
+                    position(buffer, buffer.position() + 3);
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    position(buffer, buffer.position() + 4);
+                    break;
+                case LONG:
+                case DOUBLE:
+                    position(buffer, buffer.position() + 8);
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        String utf8(int index)
+        {
+            String value = strings[index];
+            if (value == null)
+            {
+                int offset = offsets[index];
+                int length = buffer.getShort(offset + 1) & 0xFFFF;
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++)
+                {
+                    bytes[i] = buffer.get(offset + 3 + i);
+                }
+                // modified UTF-8 only differs from UTF-8 for NUL and supplementary characters, neither of which
+                // appear in names and descriptors in practice
+                value = new String(bytes, StandardCharsets.UTF_8);
+                strings[index] = value;
+            }
+            return value;
+        }
+
+        String className(int index)
+        {
+            return utf8(buffer.getShort(offsets[index] + 1) & 0xFFFF);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.mule.tooling.apt.bytecode;
+
+import org.mule.tooling.apt.model.Interner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads every {@code .class} file of a set of jars and directories, one jar or directory file per task on a fixed
+ * pool. Loose class files are memory mapped; jar entries are inflated into a buffer of their declared size. As on a
+ * class path, a class found under more than one root is taken from the first.
+ */
+public class ClassPathScanner
+{
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final int threads;
+    private final Interner interner;
+
+    public ClassPathScanner(int threads, Interner interner)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+        }
+        this.threads = threads;
+        this.interner = interner;
+    }
+
+    public Collection<ClassFile> scan(List<Path> roots) throws IOException
+    {
+        List<Collection<ClassFile>> rootClasses = new ArrayList<>(roots.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (Path root : roots)
+            {
+                Collection<ClassFile> classes = new ConcurrentLinkedQueue<>();
+                rootClasses.add(classes);
+                if (Files.isDirectory(root))
+                {
+                    for (Path classFile : classFiles(root))
+                    {
+                        tasks.add(executor.submit(() -> add(classes, readFile(classFile))));
+                    }
+                }
+                else
+                {
+                    tasks.add(executor.submit(() -> readJar(root, classes)));
+                }
+            }
+            for (Future<?> task : tasks)
+            {
+                task.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof UncheckedIOException)
+            {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        Map<String, ClassFile> classes = new LinkedHashMap<>();
+        for (Collection<ClassFile> root : rootClasses)
+        {
+            for (ClassFile classFile : root)
+            {
+                classes.putIfAbsent(classFile.getBinaryName(), classFile);
+            }
+        }
+        return classes.values();
+    }
+
+    private static List<Path> classFiles(Path root) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root))
+        {
+            return files.filter(x -> x.getFileName().toString().endsWith(CLASS_SUFFIX) && !isModuleInfo(x.getFileName().toString()))
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private ClassFile readFile(Path classFile)
+    {
+        try (FileChannel channel = FileChannel.open(classFile, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return ClassFile.parse(buffer, interner);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readJar(Path jar, Collection<ClassFile> classes)
+    {
+        try (ZipFile zip = new ZipFile(jar.toFile()))
+        {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(CLASS_SUFFIX) || name.startsWith("META-INF/") || isModuleInfo(name))
+                {
+                    continue;
+                }
+                try (InputStream input = zip.getInputStream(entry))
+                {
+                    add(classes, ClassFile.parse(ByteBuffer.wrap(readFully(input, entry.getSize())), interner));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readFully(InputStream input, long size) throws IOException
+    {
+        byte[] bytes = new byte[size >= 0 ? (int) size : 8192];
+        int length = 0;
+        int read;
+        while ((read = input.read(bytes, length, bytes.length - length)) >= 0)
+        {
+            length += read;
+            if (length == bytes.length)
+            {
+                int next = input.read();
+                if (next < 0)
+                {
+                    break;
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                bytes[length++] = (byte) next;
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    private static boolean isModuleInfo(String name)
+    {
+        return name.endsWith("module-info.class") || name.endsWith("package-info.class");
+    }
+
+    private static void add(Collection<ClassFile> classes, ClassFile classFile)
+    {
+        if (classFile != null)
+        {
+            classes.add(classFile);
+        }
+    }
+}
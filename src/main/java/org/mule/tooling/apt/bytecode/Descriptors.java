@@ -0,0 +1,96 @@
+package org.mule.tooling.apt.bytecode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns JVM field and method descriptors into the Java source type names javac prints for the same members.
+ */
+final class Descriptors
+{
+    private Descriptors()
+    {
+    }
+
+    static String fieldType(String descriptor)
+    {
+        StringBuilder type = new StringBuilder();
+        parse(descriptor, 0, type);
+        return type.toString();
+    }
+
+    static List<String> parameterTypes(String descriptor)
+    {
+        List<String> types = new ArrayList<>();
+        int index = 1;
+        while (descriptor.charAt(index) != ')')
+        {
+            StringBuilder type = new StringBuilder();
+            index = parse(descriptor, index, type);
+            types.add(type.toString());
+        }
+        return types;
+    }
+
+    static String returnType(String descriptor)
+    {
+        return fieldType(descriptor.substring(descriptor.indexOf(')') + 1));
+    }
+
+    /**
+     * @return the index right after the type starting at {@code index}
+     */
+    private static int parse(String descriptor, int index, StringBuilder type)
+    {
+        int dimensions = 0;
+        while (descriptor.charAt(index) == '[')
+        {
+            dimensions++;
+            index++;
+        }
+        char c = descriptor.charAt(index);
+        if (c == 'L')
+        {
+            int end = descriptor.indexOf(';', index);
+            type.append(ClassFile.binaryToQualified(descriptor.substring(index + 1, end)));
+            index = end + 1;
+        }
+        else
+        {
+            type.append(primitive(c));
+            index++;
+        }
+        for (int i = 0; i < dimensions; i++)
+        {
+            type.append("[]");
+        }
+        return index;
+    }
+
+    private static String primitive(char c)
+    {
+        switch (c)
+        {
+        case 'B':
+            return "byte";
+        case 'C':
+            return "char";
+        case 'D':
+            return "double";
+        case 'F':
+            return "float";
+        case 'I':
+            return "int";
+        case 'J':
+            return "long";
+        case 'S':
+            return "short";
+        case 'Z':
+            return "boolean";
+        case 'V':
+            return "void";
+        default:
+            throw new IllegalArgumentException("Unknown descriptor type " + c);
+        }
+    }
+}
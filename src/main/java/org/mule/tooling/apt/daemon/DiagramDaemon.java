@@ -0,0 +1,633 @@
+package org.mule.tooling.apt.daemon;
+
+import org.mule.tooling.apt.DiagramFormat;
+import org.mule.tooling.apt.DiagramGenerator;
+import org.mule.tooling.apt.DiagramOptions;
+import org.mule.tooling.apt.ModelCache;
+import org.mule.tooling.apt.PlantUmlRenderer;
+import org.mule.tooling.apt.ProcessorMetrics;
+import org.mule.tooling.apt.SourceTypeFingerprint;
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Keeps the package diagrams of source trees up to date while their files are edited, for IDEs and documentation
+ * previews. javac runs in this JVM with {@code -proc:only}, so sources are parsed and entered but never attributed
+ * or generated, and only over the packages of the changed files plus the packages whose diagrams show their types.
+ * <p>
+ * What makes an update cheap is kept between compilations: the file manager, with its open jars, and an in memory
+ * {@link ModelCache}, so the unchanged files of a recompiled package are parsed again but not extracted again.
+ * Changes come from a {@linkplain #watch() watched} source tree or from {@linkplain #serve(ServerSocket) a local
+ * socket}, one path per line.
+ * <p>
+ * Whole-program diagrams and the project relationship graph need the whole compilation, so they are left to the
+ * build.
+ */
+public class DiagramDaemon implements Closeable
+{
+    /**
+     * How long the source tree must stay quiet before the changes are applied, as editors save in several steps.
+     */
+    private static final long QUIET_MILLIS = 20;
+
+    private static final String SOURCE_EXTENSION = ".java";
+
+    private static final List<String> DIAGRAM_EXTENSIONS = DiagramFormat.load(DiagramDaemon.class.getClassLoader()).values().stream()
+                                                                     .map(x -> x.createRenderer(false).getExtension())
+                                                                     .collect(Collectors.toList());
+
+    private final List<Path> sourceRoots;
+    private final Path outputDirectory;
+    private final List<String> javacOptions;
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager fileManager;
+    private final ModelCache modelCache;
+    private final Set<String> packages = new HashSet<>();
+    /**
+     * Source packages whose types each package diagram shows, from its last extraction.
+     */
+    private final Map<String, Set<String>> shownPackages = new HashMap<>();
+    /**
+     * Source packages with a type referring to a type that did not resolve, in its last compilation. Their diagrams
+     * change once a file declaring that type is added, wherever it is, so every update generates them again.
+     */
+    private final Set<String> unresolvedPackages = new HashSet<>();
+
+    /**
+     * @param options the processor options, by name, as they would be passed to javac with {@code -A}
+     */
+    public DiagramDaemon(List<Path> sourceRoots, Path outputDirectory, List<Path> classPath, Map<String, String> options) throws IOException
+    {
+        DiagramOptions diagramOptions = new DiagramOptions(options);
+        if (diagramOptions.isWholeProgram() || diagramOptions.isRelations())
+        {
+            throw new IllegalArgumentException(DiagramOptions.WHOLE_PROGRAM + " and " + DiagramOptions.RELATIONS + " need the whole compilation");
+        }
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+        {
+            throw new IllegalStateException("No system Java compiler, run on a JDK");
+        }
+        this.sourceRoots = sourceRoots.stream().map(x -> x.toAbsolutePath().normalize()).collect(Collectors.toList());
+        this.outputDirectory = outputDirectory;
+        Files.createDirectories(outputDirectory);
+        fileManager = compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, files(this.sourceRoots));
+        fileManager.setLocation(StandardLocation.CLASS_PATH, files(classPath));
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDirectory.toFile()));
+        javacOptions = new ArrayList<>();
+        javacOptions.add("-proc:only");
+        for (Map.Entry<String, String> option : options.entrySet())
+        {
+            javacOptions.add("-A" + option.getKey() + "=" + option.getValue());
+        }
+        modelCache = diagramOptions.getCacheDir() == null
+                     ? ModelCache.inMemory(diagramOptions.getCacheMaxBytes(), new Interner(), ProcessorMetrics.create(false))
+                     : ModelCache.open(diagramOptions.getCacheDir(), diagramOptions.getCacheMaxBytes(), new Interner(), ProcessorMetrics.create(false));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Path output = null;
+        List<Path> classPath = new ArrayList<>();
+        Map<String, String> options = new LinkedHashMap<>();
+        int port = -1;
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-o".equals(args[i]) && i + 1 < args.length)
+            {
+                output = Paths.get(args[++i]);
+            }
+            else if ("-cp".equals(args[i]) && i + 1 < args.length)
+            {
+                for (String entry : args[++i].split(File.pathSeparator))
+                {
+                    classPath.add(Paths.get(entry));
+                }
+            }
+            else if (args[i].startsWith("-A") && args[i].indexOf('=') > 2)
+            {
+                options.put(args[i].substring(2, args[i].indexOf('=')), args[i].substring(args[i].indexOf('=') + 1));
+            }
+            else if ("-p".equals(args[i]) && i + 1 < args.length)
+            {
+                port = parseInt(args[++i], Integer.MIN_VALUE);
+            }
+            else
+            {
+                roots.add(Paths.get(args[i]));
+            }
+        }
+        if (output == null || roots.isEmpty() || port < -1 || port > 0xFFFF)
+        {
+            System.err.println("Usage: " + DiagramDaemon.class.getName() +
+                               " -o <output directory> [-cp <class path>] [-A<option>=<value>]... [-p <port>] <source directory>...");
+            System.exit(2);
+        }
+        try (DiagramDaemon daemon = new DiagramDaemon(roots, output, classPath, options))
+        {
+            report(daemon.build());
+            if (port < 0)
+            {
+                daemon.watch();
+            }
+            else
+            {
+                try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress()))
+                {
+                    System.out.println("Listening on " + server.getLocalSocketAddress());
+                    daemon.serve(server);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the value, or {@code invalid} when it is not a number
+     */
+    private static int parseInt(String value, int invalid)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return invalid;
+        }
+    }
+
+    private static void report(Result result)
+    {
+        System.out.println(result);
+        result.getErrors().forEach(System.err::println);
+    }
+
+    /**
+     * Generates the diagram of every source package.
+     */
+    public synchronized Result build() throws IOException
+    {
+        packages.clear();
+        shownPackages.clear();
+        unresolvedPackages.clear();
+        for (Path root : sourceRoots)
+        {
+            try (Stream<Path> files = Files.walk(root))
+            {
+                files.filter(DiagramDaemon::isSource).forEach(x -> packages.add(packageOf(x)));
+            }
+        }
+        return compile(new TreeSet<>(packages));
+    }
+
+    /**
+     * Generates the diagrams of the packages of {@code changedFiles} again, of the packages whose diagrams show their
+     * types, and of the packages with types that did not resolve. A file may have been added, changed or deleted; a directory stands for every package under it.
+     * Other files are ignored.
+     */
+    public synchronized Result update(Collection<Path> changedFiles) throws IOException
+    {
+        Set<String> changed = new TreeSet<>();
+        for (Path changedFile : changedFiles)
+        {
+            Path file = changedFile.toAbsolutePath().normalize();
+            String packageName = packageOf(file);
+            if (packageName == null)
+            {
+                continue;
+            }
+            if (file.getFileName().toString().endsWith(SOURCE_EXTENSION))
+            {
+                changed.add(packageName);
+                packages.add(packageName);
+            }
+            else if (Files.isDirectory(file))
+            {
+                try (Stream<Path> files = Files.walk(file))
+                {
+                    files.filter(DiagramDaemon::isSource).forEach(x -> changed.add(packageOf(x)));
+                }
+                packages.addAll(changed);
+            }
+            else if (!Files.exists(file))
+            {
+                String directoryPackage = packageName.isEmpty() ? file.getFileName().toString() : packageName + "." + file.getFileName();
+                for (String known : packages)
+                {
+                    if (known.equals(directoryPackage) || known.startsWith(directoryPackage + "."))
+                    {
+                        changed.add(known);
+                    }
+                }
+            }
+        }
+        Set<String> affected = new TreeSet<>(changed);
+        affected.addAll(unresolvedPackages);
+        for (Map.Entry<String, Set<String>> shown : shownPackages.entrySet())
+        {
+            if (!Collections.disjoint(shown.getValue(), changed))
+            {
+                affected.add(shown.getKey());
+            }
+        }
+        return compile(affected);
+    }
+
+    private Result compile(Set<String> packageNames) throws IOException
+    {
+        long start = System.nanoTime();
+        unresolvedPackages.removeAll(packageNames);
+        List<File> sources = new ArrayList<>();
+        for (String packageName : packageNames)
+        {
+            List<File> packageSources = sourcesOf(packageName);
+            if (packageSources.isEmpty())
+            {
+                packages.remove(packageName);
+                shownPackages.remove(packageName);
+                deleteDiagrams(packageName);
+            }
+            sources.addAll(packageSources);
+        }
+        List<String> errors = new ArrayList<>();
+        if (!sources.isEmpty())
+        {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, javacOptions, null, fileManager.getJavaFileObjectsFromFiles(sources));
+            DiagramGenerator.Listener listener = new DiagramGenerator.Listener()
+            {
+                @Override public void extracted(DiagramModel diagram)
+                {
+                    recordShownPackages(diagram);
+                }
+            };
+            task.setProcessors(Arrays.asList(new DiagramGenerator(modelCache, listener), new UnresolvedTypes()));
+            task.call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+            {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                {
+                    errors.add(diagnostic.toString());
+                }
+            }
+        }
+        return new Result(packageNames, sources.size(), errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Records which source packages the diagram shows types of, so it is generated again when one of them changes.
+     */
+    private void recordShownPackages(DiagramModel diagram)
+    {
+        Set<String> shown = new HashSet<>();
+        for (TypeModel type : diagram.getTypes())
+        {
+            addOwner(shown, type.getName());
+        }
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            addOwner(shown, diagram.getEdgeParent(i));
+        }
+        shown.remove(diagram.getPackageName());
+        shownPackages.put(diagram.getPackageName(), shown);
+    }
+
+    /**
+     * Adds the source package declaring {@code typeName}, the longest package name it starts with, which also
+     * covers nested types.
+     */
+    private void addOwner(Set<String> owners, String typeName)
+    {
+        int end = typeName.indexOf('<');
+        String name = end < 0 ? typeName : typeName.substring(0, end);
+        for (int dot = name.lastIndexOf('.'); dot > 0; dot = name.lastIndexOf('.', dot - 1))
+        {
+            if (packages.contains(name.substring(0, dot)))
+            {
+                owners.add(name.substring(0, dot));
+                return;
+            }
+        }
+        if (packages.contains(""))
+        {
+            owners.add("");
+        }
+    }
+
+    /**
+     * Records the packages of the compiled types that refer to a type that does not resolve.
+     */
+    @SupportedAnnotationTypes("*")
+    private class UnresolvedTypes extends AbstractProcessor
+    {
+        @Override public SourceVersion getSupportedSourceVersion()
+        {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+        {
+            for (Element element : roundEnv.getRootElements())
+            {
+                if (element instanceof TypeElement && !SourceTypeFingerprint.isResolved((TypeElement) element))
+                {
+                    unresolvedPackages.add(processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString());
+                }
+            }
+            return false;
+        }
+    }
+
+    private List<File> sourcesOf(String packageName) throws IOException
+    {
+        List<File> sources = new ArrayList<>();
+        for (Path root : sourceRoots)
+        {
+            Path directory = packageName.isEmpty() ? root : root.resolve(packageName.replace('.', File.separatorChar));
+            if (!Files.isDirectory(directory))
+            {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(directory))
+            {
+                files.filter(DiagramDaemon::isSource).sorted().forEach(x -> sources.add(x.toFile()));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Deletes the diagrams, and their parts, of a package that has no source left.
+     */
+    private void deleteDiagrams(String packageName) throws IOException
+    {
+        Path directory = packageName.isEmpty() ? outputDirectory : outputDirectory.resolve(packageName.replace('.', File.separatorChar));
+        if (!Files.isDirectory(directory))
+        {
+            return;
+        }
+        String diagramName = PlantUmlRenderer.diagramName(packageName);
+        List<Path> diagrams;
+        try (Stream<Path> files = Files.list(directory))
+        {
+            diagrams = files.filter(x -> isDiagramOf(x.getFileName().toString(), diagramName)).collect(Collectors.toList());
+        }
+        for (Path diagram : diagrams)
+        {
+            Files.delete(diagram);
+        }
+    }
+
+    private static boolean isDiagramOf(String fileName, String diagramName)
+    {
+        for (String extension : DIAGRAM_EXTENSIONS)
+        {
+            if (fileName.endsWith(extension))
+            {
+                String name = fileName.substring(0, fileName.length() - extension.length());
+                return name.equals(diagramName) || name.startsWith(diagramName + "-") && name.substring(diagramName.length() + 1).chars().allMatch(Character::isDigit);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the package of a file under one of the source roots, or {@code null}
+     */
+    private String packageOf(Path file)
+    {
+        for (Path root : sourceRoots)
+        {
+            if (file.startsWith(root) && !file.equals(root))
+            {
+                Path relative = root.relativize(file.getParent());
+                return relative.toString().replace(relative.getFileSystem().getSeparator(), ".");
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSource(Path file)
+    {
+        return file.getFileName().toString().endsWith(SOURCE_EXTENSION) && Files.isRegularFile(file);
+    }
+
+    /**
+     * Applies the changes of the source tree until interrupted, each batch once the tree has been quiet for
+     * {@value #QUIET_MILLIS} ms.
+     */
+    public void watch() throws IOException, InterruptedException
+    {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService())
+        {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (Path root : sourceRoots)
+            {
+                register(watcher, root, directories);
+            }
+            while (true)
+            {
+                WatchKey key = watcher.take();
+                Set<Path> changed = new HashSet<>();
+                boolean overflow = false;
+                while (key != null)
+                {
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            overflow = true;
+                            continue;
+                        }
+                        Path file = directory.resolve((Path) event.context());
+                        if (Files.isDirectory(file))
+                        {
+                            register(watcher, file, directories);
+                        }
+                        changed.add(file);
+                    }
+                    if (!key.reset())
+                    {
+                        directories.remove(key);
+                    }
+                    key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                report(overflow ? build() : update(changed));
+            }
+        }
+    }
+
+    private static void register(WatchService watcher, Path root, Map<WatchKey, Path> directories) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root))
+        {
+            for (Path directory : files.filter(Files::isDirectory).collect(Collectors.toList()))
+            {
+                directories.put(directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                                                   StandardWatchEventKinds.ENTRY_MODIFY), directory);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes sent by local clients until {@code server} is closed. A client sends the changed paths one
+     * per line, ended by an empty line or by closing its output, and gets the {@link Result} line back, followed by
+     * one line per compilation error.
+     */
+    public void serve(ServerSocket server) throws IOException
+    {
+        while (!server.isClosed())
+        {
+            try (Socket client = server.accept())
+            {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                List<Path> changed = new ArrayList<>();
+                for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine())
+                {
+                    changed.add(Paths.get(line));
+                }
+                Result result = update(changed);
+                Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+                writer.write(result + "\n");
+                for (String error : result.getErrors())
+                {
+                    writer.write(error.replace('\n', ' ') + "\n");
+                }
+                writer.flush();
+            }
+            catch (IOException e)
+            {
+                if (server.isClosed())
+                {
+                    return;
+                }
+                System.err.println("Diagram daemon client failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Stores the model cache when it was opened from a {@link DiagramOptions#CACHE_DIR}, so the next daemon starts
+     * warm.
+     */
+    @Override public synchronized void close() throws IOException
+    {
+        try
+        {
+            modelCache.store();
+        }
+        finally
+        {
+            fileManager.close();
+        }
+    }
+
+    private static List<File> files(List<Path> paths)
+    {
+        return paths.stream().map(Path::toFile).collect(Collectors.toList());
+    }
+
+    /**
+     * What one build or update did.
+     */
+    public static class Result
+    {
+        private final Set<String> packages;
+        private final int sourceFiles;
+        private final List<String> errors;
+        private final long millis;
+
+        Result(Set<String> packages, int sourceFiles, List<String> errors, long millis)
+        {
+            this.packages = Collections.unmodifiableSet(packages);
+            this.sourceFiles = sourceFiles;
+            this.errors = Collections.unmodifiableList(errors);
+            this.millis = millis;
+        }
+
+        /**
+         * @return the packages whose diagrams were generated again, or deleted, in name order
+         */
+        public Set<String> getPackages()
+        {
+            return packages;
+        }
+
+        public int getSourceFiles()
+        {
+            return sourceFiles;
+        }
+
+        /**
+         * @return the compilation errors; the diagrams of a package that does not parse are left as they were
+         */
+        public List<String> getErrors()
+        {
+            return errors;
+        }
+
+        public long getMillis()
+        {
+            return millis;
+        }
+
+        @Override public String toString()
+        {
+            return "Updated " + packages.size() + " packages from " + sourceFiles + " files in " + millis + " ms" +
+                   (errors.isEmpty() ? "" : ", " + errors.size() + " errors") + (packages.isEmpty() ? "" : ": " + String.join(", ", packages));
+        }
+    }
+}
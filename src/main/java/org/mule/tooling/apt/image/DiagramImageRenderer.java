@@ -0,0 +1,355 @@
+package org.mule.tooling.apt.image;
+
+import org.mule.tooling.apt.DiagramGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Renders the diagrams generated by {@link org.mule.tooling.apt.DiagramGenerator} to images next to them, so
+ * documentation builds can include images instead of rendering every diagram again. Diagrams are rendered in
+ * parallel, and each image is cached under the hash of its diagram text, so a diagram that did not change is never
+ * rendered twice.
+ * <p>
+ * The generated {@code .adoc} files still hold the PlantUML block, so a documentation build including them renders
+ * the diagrams again. With {@linkplain #DiagramImageRenderer(Source, ImageBackend, String, ImageCache, int, boolean)
+ * image includes} an {@code <name>}{@value #IMAGE_INCLUDE_SUFFIX} file is written next to each image, holding only
+ * the {@code image::} macro, for the documentation to include instead.
+ */
+public class DiagramImageRenderer
+{
+    /**
+     * Which generated files are rendered.
+     */
+    public enum Source
+    {
+        /**
+         * The PlantUML block of the {@code .adoc} diagrams.
+         */
+        PLANTUML(".adoc"),
+        DOT(".dot");
+
+        private final String extension;
+
+        Source(String extension)
+        {
+            this.extension = extension;
+        }
+    }
+
+    public static final String IMAGE_INCLUDE_SUFFIX = "-image.adoc";
+
+    private static final String BLOCK_DELIMITER = "....";
+
+    /**
+     * The names the generator gives package diagrams, the relationship graph and their parts, so other files with
+     * the same extension, such as hand-written documentation, are never rendered.
+     */
+    private static final Pattern DIAGRAM_NAME = Pattern.compile("(.*-class-diagram|" + Pattern.quote(DiagramGenerator.RELATIONSHIP_GRAPH_NAME) + ")(-[0-9]+)?");
+
+    private final Source source;
+    private final ImageBackend backend;
+    private final String format;
+    private final ImageCache cache;
+    private final int threads;
+    private final boolean imageIncludes;
+
+    /**
+     * @param format the image format, as the backend names it, such as {@code svg} or {@code png}
+     */
+    public DiagramImageRenderer(Source source, ImageBackend backend, String format, ImageCache cache, int threads)
+    {
+        this(source, backend, format, cache, threads, false);
+    }
+
+    /**
+     * @param imageIncludes whether an AsciiDoc file including the image is written next to each image
+     */
+    public DiagramImageRenderer(Source source, ImageBackend backend, String format, ImageCache cache, int threads, boolean imageIncludes)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+        }
+        this.source = source;
+        this.backend = backend;
+        this.format = format;
+        this.cache = cache;
+        this.threads = threads;
+        this.imageIncludes = imageIncludes;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path cacheDir = null;
+        Source source = Source.PLANTUML;
+        String format = "svg";
+        List<String> command = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean imageIncludes = false;
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-c".equals(args[i]) && i + 1 < args.length)
+            {
+                cacheDir = Paths.get(args[++i]);
+            }
+            else if ("-s".equals(args[i]) && i + 1 < args.length)
+            {
+                source = parseSource(args[++i]);
+            }
+            else if ("-f".equals(args[i]) && i + 1 < args.length)
+            {
+                format = args[++i];
+            }
+            else if ("-x".equals(args[i]) && i + 1 < args.length)
+            {
+                command = Arrays.asList(args[++i].trim().split("\\s+"));
+            }
+            else if ("-t".equals(args[i]) && i + 1 < args.length)
+            {
+                threads = parseInt(args[++i], 0);
+            }
+            else if ("-a".equals(args[i]))
+            {
+                imageIncludes = true;
+            }
+            else
+            {
+                roots.add(Paths.get(args[i]));
+            }
+        }
+        if (cacheDir == null || roots.isEmpty() || source == null || threads < 1)
+        {
+            System.err.println("Usage: " + DiagramImageRenderer.class.getName() +
+                               " -c <cache directory> [-s plantuml|dot] [-f svg|png] [-x <command>] [-t <threads>] [-a] <diagram directory>...");
+            System.exit(2);
+        }
+        ImageBackend backend = source == Source.DOT ? ProcessImageBackend.graphviz(command == null ? Arrays.asList("dot") : command)
+                                                    : ProcessImageBackend.plantUml(command == null ? Arrays.asList("plantuml") : command);
+        DiagramImageRenderer renderer = new DiagramImageRenderer(source, backend, format, new ImageCache(cacheDir), threads, imageIncludes);
+        for (Path root : roots)
+        {
+            Result result = renderer.render(root);
+            System.out.println(root + ": " + result.getRendered() + " rendered, " + result.getCached() + " from cache, " + result.getUnchanged() + " unchanged");
+        }
+    }
+
+    /**
+     * @return the source, or {@code null} when there is no such source
+     */
+    private static Source parseSource(String value)
+    {
+        try
+        {
+            return Source.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the value, or {@code invalid} when it is not a number
+     */
+    private static int parseInt(String value, int invalid)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return invalid;
+        }
+    }
+
+    /**
+     * Renders every generated diagram under {@code directory}.
+     */
+    public Result render(Path directory) throws IOException
+    {
+        List<Path> diagrams;
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            diagrams = files.filter(x -> isDiagram(x.getFileName().toString()) && Files.isRegularFile(x))
+                            .sorted()
+                            .collect(Collectors.toList());
+        }
+        Result result = new Result();
+        if (diagrams.isEmpty())
+        {
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, diagrams.size()));
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<>(diagrams.size());
+            for (Path diagram : diagrams)
+            {
+                tasks.add(executor.submit(() ->
+                {
+                    renderDiagram(diagram, result);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks)
+            {
+                task.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted rendering " + directory, e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private boolean isDiagram(String fileName)
+    {
+        return fileName.endsWith(source.extension) &&
+               DIAGRAM_NAME.matcher(fileName.substring(0, fileName.length() - source.extension.length())).matches();
+    }
+
+    private void renderDiagram(Path diagram, Result result) throws IOException
+    {
+        String text = diagramSource(new String(Files.readAllBytes(diagram), StandardCharsets.UTF_8));
+        if (text == null)
+        {
+            return;
+        }
+        String key = key(text);
+        byte[] image = cache.get(key, format);
+        if (image == null)
+        {
+            image = backend.render(text, format);
+            cache.put(key, format, image);
+            result.rendered.incrementAndGet();
+        }
+        else
+        {
+            result.cached.incrementAndGet();
+        }
+        String fileName = diagram.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - source.extension.length());
+        if (imageIncludes)
+        {
+            writeIfChanged(diagram.resolveSibling(name + IMAGE_INCLUDE_SUFFIX), ("image::" + name + "." + format + "[]\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (!writeIfChanged(diagram.resolveSibling(name + "." + format), image))
+        {
+            result.unchanged.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return whether the file was written, {@code false} when it already held {@code content}
+     */
+    private static boolean writeIfChanged(Path file, byte[] content) throws IOException
+    {
+        if (Files.isRegularFile(file) && Files.size(file) == content.length && Arrays.equals(Files.readAllBytes(file), content))
+        {
+            return false;
+        }
+        Files.write(file, content);
+        return true;
+    }
+
+    /**
+     * @return the text the backend renders, or {@code null} when the file holds no diagram
+     */
+    String diagramSource(String content)
+    {
+        if (source == Source.DOT)
+        {
+            return content;
+        }
+        int start = content.indexOf(BLOCK_DELIMITER + "\n");
+        int end = content.lastIndexOf("\n" + BLOCK_DELIMITER);
+        if (start < 0 || end <= start)
+        {
+            return null;
+        }
+        return "@startuml\n" + content.substring(start + BLOCK_DELIMITER.length() + 1, end + 1) + "@enduml\n";
+    }
+
+    private String key(String text)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(backend.getSignature().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(format.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+            {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * What a run did: diagrams rendered by the backend, diagrams whose image came from the cache, and images that
+     * were already up to date on disk, among either of them.
+     */
+    public static class Result
+    {
+        private final AtomicInteger rendered = new AtomicInteger();
+        private final AtomicInteger cached = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+
+        public int getRendered()
+        {
+            return rendered.get();
+        }
+
+        public int getCached()
+        {
+            return cached.get();
+        }
+
+        public int getUnchanged()
+        {
+            return unchanged.get();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.mule.tooling.apt.image;
+
+import java.io.IOException;
+
+/**
+ * Turns the text of one diagram into an image. Implementations are called from several threads at once.
+ */
+public interface ImageBackend
+{
+    /**
+     * @return what, besides the diagram text and image format, decides the image bytes, such as the command line;
+     * part of the cache key, so images of another backend are not reused
+     */
+    String getSignature();
+
+    byte[] render(String source, String format) throws IOException;
+}
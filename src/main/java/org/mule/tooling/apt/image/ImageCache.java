@@ -0,0 +1,68 @@
+package org.mule.tooling.apt.image;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Rendered images addressed by the hash of what they were rendered from, one file each under a directory that
+ * outlives the build. Entries never change once written, so the cache can be shared by concurrent builds.
+ */
+public class ImageCache
+{
+    private final Path directory;
+
+    public ImageCache(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the image stored under {@code key}, or {@code null}
+     */
+    public byte[] get(String key, String format) throws IOException
+    {
+        try
+        {
+            return Files.readAllBytes(path(key, format));
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the image next to its final place and moves it there, so readers never see a partial file.
+     */
+    public void put(String key, String format, byte[] image) throws IOException
+    {
+        Path target = path(key, format);
+        Files.createDirectories(target.getParent());
+        Path temporary = Files.createTempFile(target.getParent(), key, ".tmp");
+        try
+        {
+            Files.write(temporary, image);
+            try
+            {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path path(String key, String format)
+    {
+        return directory.resolve(key.substring(0, 2)).resolve(key + "." + format);
+    }
+}
@@ -0,0 +1,102 @@
+package org.mule.tooling.apt.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renders by piping the diagram text through an external command, such as PlantUML or Graphviz, so the processor
+ * itself does not depend on either.
+ */
+public class ProcessImageBackend implements ImageBackend
+{
+    private final List<String> command;
+    private final String formatFlag;
+
+    /**
+     * @param formatFlag prefix of the image format argument appended to {@code command}, as in {@code -tsvg}
+     */
+    public ProcessImageBackend(List<String> command, String formatFlag)
+    {
+        this.command = new ArrayList<>(command);
+        this.formatFlag = formatFlag;
+    }
+
+    /**
+     * @param command how PlantUML is run, such as {@code plantuml} or {@code java -jar plantuml.jar}
+     */
+    public static ProcessImageBackend plantUml(List<String> command)
+    {
+        List<String> pipe = new ArrayList<>(command);
+        pipe.addAll(Arrays.asList("-pipe", "-charset", "UTF-8"));
+        return new ProcessImageBackend(pipe, "-t");
+    }
+
+    /**
+     * @param command how Graphviz is run, usually {@code dot}
+     */
+    public static ProcessImageBackend graphviz(List<String> command)
+    {
+        return new ProcessImageBackend(command, "-T");
+    }
+
+    @Override public String getSignature()
+    {
+        return String.join(" ", command) + " " + formatFlag;
+    }
+
+    /**
+     * The text goes in and errors come out through temporary files, so neither side of the pipe can block the
+     * other.
+     */
+    @Override public byte[] render(String source, String format) throws IOException
+    {
+        File input = File.createTempFile("diagram", ".txt");
+        File errors = File.createTempFile("diagram", ".err");
+        try
+        {
+            Files.write(input.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            List<String> arguments = new ArrayList<>(command);
+            arguments.add(formatFlag + format);
+            Process process = new ProcessBuilder(arguments).redirectInput(input).redirectError(errors).start();
+            byte[] image;
+            try (InputStream output = process.getInputStream())
+            {
+                image = readAll(output);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0)
+            {
+                throw new IOException(arguments + " exited with " + exitCode + ": " + new String(Files.readAllBytes(errors.toPath()), StandardCharsets.UTF_8).trim());
+            }
+            return image;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted rendering with " + command, e);
+        }
+        finally
+        {
+            Files.deleteIfExists(input.toPath());
+            Files.deleteIfExists(errors.toPath());
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[8192];
+        for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+        {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
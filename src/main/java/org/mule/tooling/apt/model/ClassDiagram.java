@@ -1,7 +1,10 @@
 package org.mule.tooling.apt.model;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.lang.model.element.TypeElement;
 
@@ -9,16 +12,33 @@ public class ClassDiagram
 {
     private String packageName;
 
+    private final Set<TypeElement> types = new HashSet<>();
+
+    private List<TypeElement> sortedTypes;
+
     public Collection<TypeElement> getTypes()
     {
-        return types;
+        return Collections.unmodifiableSet(types);
     }
 
-    private Collection<TypeElement> types = new HashSet<>();
+    /**
+     * @return the types in qualified name order, sorted once until a type is added
+     */
+    public List<TypeElement> getSortedTypes()
+    {
+        if (sortedTypes == null)
+        {
+            sortedTypes = Collections.unmodifiableList(ElementOrder.byQualifiedName(types));
+        }
+        return sortedTypes;
+    }
 
     public void addType(TypeElement type)
     {
-        types.add(type);
+        if (types.add(type))
+        {
+            sortedTypes = null;
+        }
     }
 
     public String getPackageName()
@@ -1,6 +1,7 @@
 package org.mule.tooling.apt.model;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.lang.model.element.PackageElement;
@@ -19,4 +20,12 @@ public class CreationContext
     {
         return packages;
     }
+
+    /**
+     * @return the packages in qualified name order
+     */
+    public List<PackageElement> getSortedPackages()
+    {
+        return ElementOrder.byQualifiedName(packages.keySet());
+    }
 }
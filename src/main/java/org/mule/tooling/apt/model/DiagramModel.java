@@ -0,0 +1,235 @@
+package org.mule.tooling.apt.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One diagram, ready to render: the types it shows, in order, its {@code parent<|--child} edges and its
+ * {@link Relation#ASSOCIATION association} and {@link Relation#DEPENDENCY dependency} relations. Edge ends are
+ * indexes into a table of node names, so each name is held once however many edges share it.
+ */
+public final class DiagramModel implements Serializable
+{
+    private static final long serialVersionUID = 2L;
+
+    private final String name;
+    private final String packageName;
+    private final List<TypeModel> types;
+    private final String[] nodes;
+    private final int[] edgeParents;
+    private final int[] edgeChildren;
+    private final int[] relationSources;
+    private final int[] relationTargets;
+    private final byte[] relationKinds;
+
+    private DiagramModel(String name, String packageName, List<TypeModel> types, String[] nodes, int[] edgeParents, int[] edgeChildren,
+                         int[] relationSources, int[] relationTargets, byte[] relationKinds)
+    {
+        this.name = name;
+        this.packageName = packageName;
+        this.types = Collections.unmodifiableList(types);
+        this.nodes = nodes;
+        this.edgeParents = edgeParents;
+        this.edgeChildren = edgeChildren;
+        this.relationSources = relationSources;
+        this.relationTargets = relationTargets;
+        this.relationKinds = relationKinds;
+    }
+
+    public static Builder builder(String name, String packageName)
+    {
+        return new Builder(name, packageName);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
+    public List<TypeModel> getTypes()
+    {
+        return types;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeParents.length;
+    }
+
+    public String getEdgeParent(int index)
+    {
+        return nodes[edgeParents[index]];
+    }
+
+    public String getEdgeChild(int index)
+    {
+        return nodes[edgeChildren[index]];
+    }
+
+    public int getRelationCount()
+    {
+        return relationSources.length;
+    }
+
+    /**
+     * @return the type that refers to the other one
+     */
+    public String getRelationSource(int index)
+    {
+        return nodes[relationSources[index]];
+    }
+
+    public String getRelationTarget(int index)
+    {
+        return nodes[relationTargets[index]];
+    }
+
+    public Relation getRelationKind(int index)
+    {
+        return Relation.values()[relationKinds[index]];
+    }
+
+    /**
+     * Collects types and edges, dropping repeated ones, so callers can add a type or edge each time the hierarchy
+     * of a type leads to it.
+     */
+    public static class Builder
+    {
+        private final String name;
+        private final String packageName;
+        private final List<TypeModel> types = new ArrayList<>();
+        private final Set<String> typeNames = new HashSet<>();
+        private final Map<String, Integer> nodeIndexes = new HashMap<>();
+        private final List<String> nodes = new ArrayList<>();
+        private final Set<Long> edges = new HashSet<>();
+        private int[] edgeParents = new int[16];
+        private int[] edgeChildren = new int[16];
+        private int edgeCount;
+        private final Set<Long> relations = new HashSet<>();
+        private int[] relationSources = new int[16];
+        private int[] relationTargets = new int[16];
+        private byte[] relationKinds = new byte[16];
+        private int relationCount;
+
+        private Builder(String name, String packageName)
+        {
+            this.name = name;
+            this.packageName = packageName;
+        }
+
+        /**
+         * @return whether a type of that name was added, on its own or nested in another type
+         */
+        public boolean containsType(String typeName)
+        {
+            return typeNames.contains(typeName);
+        }
+
+        /**
+         * @return whether the type was added, that is, no type of the same name was added before
+         */
+        public boolean addType(TypeModel type)
+        {
+            if (containsType(type.getName()))
+            {
+                return false;
+            }
+            addNames(type);
+            types.add(type);
+            return true;
+        }
+
+        private void addNames(TypeModel type)
+        {
+            typeNames.add(type.getName());
+            for (TypeModel nestedType : type.getNestedTypes())
+            {
+                addNames(nestedType);
+            }
+        }
+
+        /**
+         * @return whether the edge was added, that is, it was not added before
+         */
+        public boolean addEdge(String parent, String child)
+        {
+            int parentIndex = node(parent);
+            int childIndex = node(child);
+            if (!edges.add(((long) parentIndex << 32) | childIndex))
+            {
+                return false;
+            }
+            if (edgeCount == edgeParents.length)
+            {
+                edgeParents = Arrays.copyOf(edgeParents, edgeCount * 2);
+                edgeChildren = Arrays.copyOf(edgeChildren, edgeCount * 2);
+            }
+            edgeParents[edgeCount] = parentIndex;
+            edgeChildren[edgeCount] = childIndex;
+            edgeCount++;
+            return true;
+        }
+
+        /**
+         * @param kind {@link Relation#ASSOCIATION} or {@link Relation#DEPENDENCY}; inheritance is an
+         *             {@linkplain #addEdge(String, String) edge}
+         * @return whether the relation was added, that is, no relation between the same types was added before
+         */
+        public boolean addRelation(String source, String target, Relation kind)
+        {
+            if (kind == Relation.INHERITANCE)
+            {
+                throw new IllegalArgumentException("Inheritance is added as an edge");
+            }
+            int sourceIndex = node(source);
+            int targetIndex = node(target);
+            if (!relations.add(((long) sourceIndex << 32) | targetIndex))
+            {
+                return false;
+            }
+            if (relationCount == relationSources.length)
+            {
+                relationSources = Arrays.copyOf(relationSources, relationCount * 2);
+                relationTargets = Arrays.copyOf(relationTargets, relationCount * 2);
+                relationKinds = Arrays.copyOf(relationKinds, relationCount * 2);
+            }
+            relationSources[relationCount] = sourceIndex;
+            relationTargets[relationCount] = targetIndex;
+            relationKinds[relationCount] = (byte) kind.ordinal();
+            relationCount++;
+            return true;
+        }
+
+        private int node(String nodeName)
+        {
+            Integer index = nodeIndexes.get(nodeName);
+            if (index == null)
+            {
+                index = nodes.size();
+                nodeIndexes.put(nodeName, index);
+                nodes.add(nodeName);
+            }
+            return index;
+        }
+
+        public DiagramModel build()
+        {
+            return new DiagramModel(name, packageName, new ArrayList<>(types), nodes.toArray(new String[0]),
+                                    Arrays.copyOf(edgeParents, edgeCount), Arrays.copyOf(edgeChildren, edgeCount),
+                                    Arrays.copyOf(relationSources, relationCount), Arrays.copyOf(relationTargets, relationCount),
+                                    Arrays.copyOf(relationKinds, relationCount));
+        }
+    }
+}
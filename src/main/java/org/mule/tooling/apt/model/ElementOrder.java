@@ -0,0 +1,42 @@
+package org.mule.tooling.apt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.lang.model.element.QualifiedNameable;
+
+/**
+ * The order diagrams list elements in, whatever order the compiler reported them in, so the same sources always
+ * give the same bytes.
+ */
+public final class ElementOrder
+{
+    private ElementOrder()
+    {
+    }
+
+    /**
+     * Sorts by qualified name. Each name is read from the compiler once, into an array sized for the elements, and
+     * positions into it are sorted, rather than asking every comparison for both names again.
+     */
+    public static <T extends QualifiedNameable> List<T> byQualifiedName(Collection<? extends T> elements)
+    {
+        List<T> unsorted = new ArrayList<>(elements);
+        String[] names = new String[unsorted.size()];
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = unsorted.get(i).getQualifiedName().toString();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+        List<T> sorted = new ArrayList<>(names.length);
+        for (int i : order)
+        {
+            sorted.add(unsorted.get(i));
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,24 @@
+package org.mule.tooling.apt.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of the names a model repeats over and over, such as {@code java.lang.String} or {@code void}.
+ * Thread safe, so classes parsed in parallel can share one.
+ */
+public class Interner
+{
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+
+    public String intern(String value)
+    {
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public int size()
+    {
+        return strings.size();
+    }
+}
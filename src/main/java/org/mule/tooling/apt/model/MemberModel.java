@@ -0,0 +1,81 @@
+package org.mule.tooling.apt.model;
+
+import java.io.Serializable;
+
+/**
+ * A field or method of a {@link TypeModel}, with its types already printed as Java source.
+ */
+public final class MemberModel implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final int modifiers;
+    private final String type;
+    private final String[] parameterTypes;
+    private final String[] parameterNames;
+
+    private MemberModel(String name, int modifiers, String type, String[] parameterTypes, String[] parameterNames)
+    {
+        this.name = name;
+        this.modifiers = modifiers;
+        this.type = type;
+        this.parameterTypes = parameterTypes;
+        this.parameterNames = parameterNames;
+    }
+
+    public static MemberModel field(String name, int modifiers, String type)
+    {
+        return new MemberModel(name, modifiers, type, null, null);
+    }
+
+    public static MemberModel method(String name, int modifiers, String returnType, String[] parameterTypes, String[] parameterNames)
+    {
+        if (parameterTypes.length != parameterNames.length)
+        {
+            throw new IllegalArgumentException("Parameter types and names of " + name + " differ in length");
+        }
+        return new MemberModel(name, modifiers, returnType, parameterTypes.clone(), parameterNames.clone());
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the {@link Modifiers} bits
+     */
+    public int getModifiers()
+    {
+        return modifiers;
+    }
+
+    /**
+     * @return the field type, or the return type of a method
+     */
+    public String getType()
+    {
+        return type;
+    }
+
+    public boolean isMethod()
+    {
+        return parameterTypes != null;
+    }
+
+    public int getParameterCount()
+    {
+        return parameterTypes == null ? 0 : parameterTypes.length;
+    }
+
+    public String getParameterType(int index)
+    {
+        return parameterTypes[index];
+    }
+
+    public String getParameterName(int index)
+    {
+        return parameterNames[index];
+    }
+}
@@ -0,0 +1,261 @@
+package org.mule.tooling.apt.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of models. Every string is written once, in a table at the start of the record, and
+ * referenced by index; numbers are unsigned varints. The same model always encodes to the same bytes, so the
+ * encoding can also be hashed.
+ */
+public final class ModelCodec
+{
+    private static final int NONE = 0;
+
+    private ModelCodec()
+    {
+    }
+
+    public static byte[] encode(TypeModel type)
+    {
+        Encoder encoder = new Encoder();
+        encoder.type(type);
+        return encoder.toByteArray();
+    }
+
+    public static byte[] encode(DiagramModel diagram)
+    {
+        Encoder encoder = new Encoder();
+        encoder.string(diagram.getName());
+        encoder.string(diagram.getPackageName());
+        encoder.number(diagram.getTypes().size());
+        for (TypeModel type : diagram.getTypes())
+        {
+            encoder.type(type);
+        }
+        encoder.number(diagram.getEdgeCount());
+        for (int i = 0; i < diagram.getEdgeCount(); i++)
+        {
+            encoder.string(diagram.getEdgeParent(i));
+            encoder.string(diagram.getEdgeChild(i));
+        }
+        encoder.number(diagram.getRelationCount());
+        for (int i = 0; i < diagram.getRelationCount(); i++)
+        {
+            encoder.string(diagram.getRelationSource(i));
+            encoder.string(diagram.getRelationTarget(i));
+            encoder.number(diagram.getRelationKind(i).ordinal());
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Reads a record written by {@link #encode(TypeModel)} from the buffer's position.
+     */
+    public static TypeModel decodeType(ByteBuffer buffer, Interner interner)
+    {
+        return new Decoder(buffer, interner).type();
+    }
+
+    /**
+     * Reads a record written by {@link #encode(DiagramModel)} from the buffer's position.
+     */
+    public static DiagramModel decodeDiagram(ByteBuffer buffer, Interner interner)
+    {
+        Decoder decoder = new Decoder(buffer, interner);
+        DiagramModel.Builder diagram = DiagramModel.builder(decoder.string(), decoder.string());
+        int types = decoder.number();
+        for (int i = 0; i < types; i++)
+        {
+            diagram.addType(decoder.type());
+        }
+        int edges = decoder.number();
+        for (int i = 0; i < edges; i++)
+        {
+            diagram.addEdge(decoder.string(), decoder.string());
+        }
+        int relations = decoder.number();
+        for (int i = 0; i < relations; i++)
+        {
+            diagram.addRelation(decoder.string(), decoder.string(), Relation.values()[decoder.number()]);
+        }
+        return diagram.build();
+    }
+
+    private static void writeNumber(ByteArrayOutputStream output, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readNumber(ByteBuffer buffer)
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return value;
+            }
+        }
+    }
+
+    private static class Encoder
+    {
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+        void number(int value)
+        {
+            writeNumber(body, value);
+        }
+
+        /**
+         * Writes the string's table index plus one, so {@code null} is {@value #NONE}.
+         */
+        void string(String value)
+        {
+            if (value == null)
+            {
+                number(NONE);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null)
+            {
+                index = table.size();
+                strings.put(value, index);
+                table.add(value);
+            }
+            number(index + 1);
+        }
+
+        void type(TypeModel type)
+        {
+            string(type.getName());
+            number(type.getKind().ordinal());
+            string(type.getSuperclass());
+            number(type.getInterfaces().size());
+            for (String interfaceName : type.getInterfaces())
+            {
+                string(interfaceName);
+            }
+            number(type.getMembers().size());
+            for (MemberModel member : type.getMembers())
+            {
+                number(member.isMethod() ? member.getParameterCount() + 1 : NONE);
+                number(member.getModifiers());
+                string(member.getName());
+                string(member.getType());
+                for (int i = 0; i < member.getParameterCount(); i++)
+                {
+                    string(member.getParameterType(i));
+                    string(member.getParameterName(i));
+                }
+            }
+            number(type.getNestedTypes().size());
+            for (TypeModel nestedType : type.getNestedTypes())
+            {
+                type(nestedType);
+            }
+        }
+
+        byte[] toByteArray()
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(body.size() + table.size() * 24);
+            writeNumber(output, table.size());
+            for (String value : table)
+            {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeNumber(output, bytes.length);
+                output.write(bytes, 0, bytes.length);
+            }
+            byte[] content = body.toByteArray();
+            output.write(content, 0, content.length);
+            return output.toByteArray();
+        }
+    }
+
+    private static class Decoder
+    {
+        private final ByteBuffer buffer;
+        private final String[] table;
+
+        Decoder(ByteBuffer buffer, Interner interner)
+        {
+            this.buffer = buffer;
+            this.table = new String[readNumber(buffer)];
+            for (int i = 0; i < table.length; i++)
+            {
+                byte[] bytes = new byte[readNumber(buffer)];
+                buffer.get(bytes);
+                table[i] = interner.intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+
+        int number()
+        {
+            return readNumber(buffer);
+        }
+
+        String string()
+        {
+            int index = number();
+            return index == NONE ? null : table[index - 1];
+        }
+
+        TypeModel type()
+        {
+            String name = string();
+            TypeModel.Kind kind = TypeModel.Kind.values()[number()];
+            String superclass = string();
+            int interfaceCount = number();
+            List<String> interfaces = new ArrayList<>(interfaceCount);
+            for (int i = 0; i < interfaceCount; i++)
+            {
+                interfaces.add(string());
+            }
+            int memberCount = number();
+            List<MemberModel> members = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++)
+            {
+                int parameters = number() - 1;
+                int modifiers = number();
+                String memberName = string();
+                String memberType = string();
+                if (parameters < 0)
+                {
+                    members.add(MemberModel.field(memberName, modifiers, memberType));
+                    continue;
+                }
+                String[] parameterTypes = new String[parameters];
+                String[] parameterNames = new String[parameters];
+                for (int p = 0; p < parameters; p++)
+                {
+                    parameterTypes[p] = string();
+                    parameterNames[p] = string();
+                }
+                members.add(MemberModel.method(memberName, modifiers, memberType, parameterTypes, parameterNames));
+            }
+            int nestedCount = number();
+            List<TypeModel> nestedTypes = new ArrayList<>(nestedCount);
+            for (int i = 0; i < nestedCount; i++)
+            {
+                nestedTypes.add(type());
+            }
+            return new TypeModel(name, kind, superclass, interfaces, members, nestedTypes);
+        }
+    }
+}
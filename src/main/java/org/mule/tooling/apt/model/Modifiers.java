@@ -0,0 +1,30 @@
+package org.mule.tooling.apt.model;
+
+/**
+ * Member modifiers as bits of an {@code int}, in the order javac reports them, so a mask iterated from the lowest
+ * bit lists the modifiers as the compiler would.
+ */
+public final class Modifiers
+{
+    public static final int PUBLIC = 1;
+    public static final int PROTECTED = 1 << 1;
+    public static final int PRIVATE = 1 << 2;
+    public static final int ABSTRACT = 1 << 3;
+    public static final int DEFAULT = 1 << 4;
+    public static final int STATIC = 1 << 5;
+    public static final int FINAL = 1 << 6;
+    public static final int TRANSIENT = 1 << 7;
+    public static final int VOLATILE = 1 << 8;
+    public static final int SYNCHRONIZED = 1 << 9;
+    public static final int NATIVE = 1 << 10;
+    public static final int STRICTFP = 1 << 11;
+
+    /**
+     * Number of modifier bits; {@code 1 << i} for {@code i} below it is a modifier.
+     */
+    public static final int COUNT = 12;
+
+    private Modifiers()
+    {
+    }
+}
@@ -0,0 +1,20 @@
+package org.mule.tooling.apt.model;
+
+/**
+ * How one type refers to another, from the strongest to the weakest.
+ */
+public enum Relation
+{
+    /**
+     * The other type is its superclass or one of its interfaces.
+     */
+    INHERITANCE,
+    /**
+     * A field holds the other type.
+     */
+    ASSOCIATION,
+    /**
+     * A method takes or returns the other type.
+     */
+    DEPENDENCY
+}
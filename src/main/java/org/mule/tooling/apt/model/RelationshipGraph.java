@@ -0,0 +1,299 @@
+package org.mule.tooling.apt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How the types of a compilation refer to each other. Types are nodes numbered in the order they are registered,
+ * and the edges of each node are held in primitive arrays, as offsets into one array of targets and one of
+ * {@link Relation} ordinals.
+ */
+public final class RelationshipGraph
+{
+    private final String[] names;
+    private final byte[] kinds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] relations;
+
+    private RelationshipGraph(String[] names, byte[] kinds, int[] offsets, int[] targets, byte[] relations)
+    {
+        this.names = names;
+        this.kinds = kinds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.relations = relations;
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public int getNodeCount()
+    {
+        return names.length;
+    }
+
+    public String getName(int node)
+    {
+        return names[node];
+    }
+
+    /**
+     * @return the kind of the type, or {@code null} when it was registered but never added
+     */
+    public TypeModel.Kind getKind(int node)
+    {
+        return kinds[node] < 0 ? null : TypeModel.Kind.values()[kinds[node]];
+    }
+
+    public int getEdgeCount()
+    {
+        return targets.length;
+    }
+
+    public int getOutDegree(int node)
+    {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int getTarget(int node, int index)
+    {
+        return targets[offsets[node] + index];
+    }
+
+    public Relation getRelation(int node, int index)
+    {
+        return Relation.values()[relations[offsets[node] + index]];
+    }
+
+    /**
+     * The whole graph as one diagram: every added type as an empty block, in name order, with its inheritance
+     * edges and relations.
+     */
+    public DiagramModel toDiagram(String diagramName)
+    {
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+        DiagramModel.Builder diagram = DiagramModel.builder(diagramName, "");
+        for (int node : order)
+        {
+            if (kinds[node] >= 0)
+            {
+                diagram.addType(new TypeModel(names[node], getKind(node), null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+            }
+        }
+        for (int node : order)
+        {
+            for (int i = 0; i < getOutDegree(node); i++)
+            {
+                String target = names[getTarget(node, i)];
+                if (getRelation(node, i) == Relation.INHERITANCE)
+                {
+                    diagram.addEdge(target, names[node]);
+                }
+                else
+                {
+                    diagram.addRelation(names[node], target, getRelation(node, i));
+                }
+            }
+        }
+        return diagram.build();
+    }
+
+    /**
+     * Types are registered first, so the table of qualified names to node ids is complete when the members of each
+     * type are then resolved against it in one pass. References to types never registered are left out.
+     */
+    public static class Builder
+    {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private byte[] kinds = new byte[64];
+        private final Map<Long, Integer> edgeIndexes = new HashMap<>();
+        private int[] sources = new int[64];
+        private int[] targets = new int[64];
+        private byte[] relations = new byte[64];
+        private int edgeCount;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * @return the node id of the type, registering it if needed
+         */
+        public int register(String qualifiedName)
+        {
+            Integer id = ids.get(qualifiedName);
+            if (id != null)
+            {
+                return id;
+            }
+            id = names.size();
+            ids.put(qualifiedName, id);
+            names.add(qualifiedName);
+            if (id == kinds.length)
+            {
+                kinds = Arrays.copyOf(kinds, id * 2);
+            }
+            kinds[id] = -1;
+            return id;
+        }
+
+        /**
+         * @return the node id of the type, or {@code -1} when it is not registered
+         */
+        public int id(String qualifiedName)
+        {
+            Integer id = ids.get(qualifiedName);
+            return id == null ? -1 : id;
+        }
+
+        public String getName(int node)
+        {
+            return names.get(node);
+        }
+
+        /**
+         * Adds the type and its nested types, with an edge to each registered type their supertypes, fields and
+         * methods refer to. A type referred to in several ways gets one edge, of the strongest relation. The new
+         * edges are the ones from the edge count before the call to the edge count after it.
+         */
+        public void addType(TypeModel type)
+        {
+            int node = register(type.getName());
+            kinds[node] = (byte) type.getKind().ordinal();
+            if (type.getSuperclass() != null)
+            {
+                addReferences(node, type.getSuperclass(), Relation.INHERITANCE);
+            }
+            for (String interfaceName : type.getInterfaces())
+            {
+                addReferences(node, interfaceName, Relation.INHERITANCE);
+            }
+            for (MemberModel member : type.getMembers())
+            {
+                Relation relation = member.isMethod() ? Relation.DEPENDENCY : Relation.ASSOCIATION;
+                addReferences(node, member.getType(), relation);
+                for (int i = 0; i < member.getParameterCount(); i++)
+                {
+                    addReferences(node, member.getParameterType(i), relation);
+                }
+            }
+            for (TypeModel nestedType : type.getNestedTypes())
+            {
+                addType(nestedType);
+            }
+        }
+
+        public int getEdgeCount()
+        {
+            return edgeCount;
+        }
+
+        public int getEdgeSource(int index)
+        {
+            return sources[index];
+        }
+
+        public int getEdgeTarget(int index)
+        {
+            return targets[index];
+        }
+
+        public Relation getEdgeRelation(int index)
+        {
+            return Relation.values()[relations[index]];
+        }
+
+        /**
+         * Looks up every qualified name in a printed type, such as both names of
+         * {@code java.util.List<com.foo.Item>}.
+         */
+        private void addReferences(int source, String type, Relation relation)
+        {
+            int start = -1;
+            for (int i = 0; i <= type.length(); i++)
+            {
+                boolean namePart = i < type.length() && (Character.isJavaIdentifierPart(type.charAt(i)) || type.charAt(i) == '.');
+                if (namePart && start < 0)
+                {
+                    start = i;
+                }
+                else if (!namePart && start >= 0)
+                {
+                    int end = i;
+                    while (end > start && type.charAt(end - 1) == '.')
+                    {
+                        end--;
+                    }
+                    int target = id(type.substring(start, end));
+                    if (target >= 0 && target != source)
+                    {
+                        addEdge(source, target, relation);
+                    }
+                    start = -1;
+                }
+            }
+        }
+
+        private void addEdge(int source, int target, Relation relation)
+        {
+            Long key = ((long) source << 32) | target;
+            Integer index = edgeIndexes.get(key);
+            if (index != null)
+            {
+                relations[index] = (byte) Math.min(relations[index], relation.ordinal());
+                return;
+            }
+            if (edgeCount == sources.length)
+            {
+                sources = Arrays.copyOf(sources, edgeCount * 2);
+                targets = Arrays.copyOf(targets, edgeCount * 2);
+                relations = Arrays.copyOf(relations, edgeCount * 2);
+            }
+            edgeIndexes.put(key, edgeCount);
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            relations[edgeCount] = (byte) relation.ordinal();
+            edgeCount++;
+        }
+
+        /**
+         * Groups the edges by source node, keeping their order within each node.
+         */
+        public RelationshipGraph build()
+        {
+            int nodeCount = names.size();
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                offsets[sources[i] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++)
+            {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            int[] builtTargets = new int[edgeCount];
+            byte[] builtRelations = new byte[edgeCount];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                int slot = next[sources[i]]++;
+                builtTargets[slot] = targets[i];
+                builtRelations[slot] = relations[i];
+            }
+            return new RelationshipGraph(names.toArray(new String[0]), Arrays.copyOf(kinds, nodeCount), offsets, builtTargets, builtRelations);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.mule.tooling.apt.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a diagram shows of one type, extracted once so it can be rendered any number of times without going
+ * back to the compiler.
+ */
+public final class TypeModel implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind
+    {
+        CLASS("class"), INTERFACE("interface"), ENUM("enum"), ANNOTATION("annotation");
+
+        private final String keyword;
+
+        Kind(String keyword)
+        {
+            this.keyword = keyword;
+        }
+
+        public String getKeyword()
+        {
+            return keyword;
+        }
+
+        public boolean isInterface()
+        {
+            return this == INTERFACE || this == ANNOTATION;
+        }
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final String superclass;
+    private final List<String> interfaces;
+    private final List<MemberModel> members;
+    private final List<TypeModel> nestedTypes;
+
+    /**
+     * @param superclass the superclass, or {@code null} for interfaces and direct subclasses of {@code java.lang.Object}
+     */
+    public TypeModel(String name, Kind kind, String superclass, List<String> interfaces, List<MemberModel> members, List<TypeModel> nestedTypes)
+    {
+        this.name = name;
+        this.kind = kind;
+        this.superclass = superclass;
+        this.interfaces = immutable(interfaces);
+        this.members = immutable(members);
+        this.nestedTypes = immutable(nestedTypes);
+    }
+
+    private static <T> List<T> immutable(List<T> values)
+    {
+        return values.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    public String getSuperclass()
+    {
+        return superclass;
+    }
+
+    public List<String> getInterfaces()
+    {
+        return interfaces;
+    }
+
+    /**
+     * Fields and methods, in declaration order.
+     */
+    public List<MemberModel> getMembers()
+    {
+        return members;
+    }
+
+    public List<TypeModel> getNestedTypes()
+    {
+        return nestedTypes;
+    }
+
+    /**
+     * @return this type without members or nested types, as rendered for types outside the diagram's package when
+     * only their place in the hierarchy matters
+     */
+    public TypeModel stub()
+    {
+        if (members.isEmpty() && nestedTypes.isEmpty())
+        {
+            return this;
+        }
+        return new TypeModel(name, kind, superclass, interfaces, Collections.emptyList(), Collections.emptyList());
+    }
+}
@@ -1,18 +1,67 @@
 package org.mule.tooling.apt;
 
+import static com.google.testing.compile.CompilationSubject.assertThat;
 import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.testing.compile.Compilation;
 import com.google.testing.compile.Compiler;
 import com.google.testing.compile.JavaFileObjects;
 
+import com.google.common.io.ByteStreams;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class DiagramGeneratorTest
 {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private static String CLASS_SOURCE_CODE = "package com.foo;\n" +
                                               "\n" +
                                               "public class MyClass\n" +
@@ -90,6 +139,24 @@ public class DiagramGeneratorTest
                                                 "    }\n" +
                                                 "}\n";
 
+    private static String BASE_CLASS = "package com.base;\n" +
+                                       "\n" +
+                                       "public abstract class AbstractBase implements java.io.Serializable\n" +
+                                       "{\n" +
+                                       "}\n";
+
+    private static String FIRST_CHILD = "package com.one;\n" +
+                                        "\n" +
+                                        "public class First extends com.base.AbstractBase\n" +
+                                        "{\n" +
+                                        "}\n";
+
+    private static String SECOND_CHILD = "package com.two;\n" +
+                                         "\n" +
+                                         "public class Second extends com.base.AbstractBase\n" +
+                                         "{\n" +
+                                         "}\n";
+
     @Test
     public void createClassDiagram()
     {
@@ -136,4 +203,705 @@ public class DiagramGeneratorTest
         Compilation compilation = compiler.compile(testClass);
         assertTrue(compilation.errors().isEmpty());
     }
+
+    @Test
+    public void writeDiagramContent()
+    {
+        JavaFileObject testClass = JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE);
+        Compiler compiler = javac().withProcessors(new DiagramGenerator());
+        Compilation compilation = compiler.compile(testClass);
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .isEqualTo("[plantuml, com-foo-class-diagram, svg]\n" +
+                                          "....\n" +
+                                          "package com.foo {\n" +
+                                          "class com.foo.MyClass{\n" +
+                                          "\t+<init>(): void\n" +
+                                          "\t-id: int\n" +
+                                          "\t#name: java.lang.String\n" +
+                                          "\t+getId(): int\n" +
+                                          "\t+setId(int id): void\n" +
+                                          "}\n" +
+                                          "\n" +
+                                          "}\n" +
+                                          "hide members\n" +
+                                          "....");
+    }
+
+    @Test
+    public void writeMemberModifiers()
+    {
+        JavaFileObject testClass = JavaFileObjects.forSourceString("com.foo.Shape",
+                                                                   "package com.foo;\n" +
+                                                                   "\n" +
+                                                                   "public abstract class Shape\n" +
+                                                                   "{\n" +
+                                                                   "    public static final int SIDES = 0;\n" +
+                                                                   "    protected abstract double area(double scale, int precision);\n" +
+                                                                   "    static synchronized void reset() {}\n" +
+                                                                   "}\n");
+        Compilation compilation = javac().withProcessors(new DiagramGenerator()).compile(testClass);
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .contains("class com.foo.Shape{\n" +
+                                         "\t+<init>(): void\n" +
+                                         "\t+ {static}SIDES: int\n" +
+                                         "\t# {abstract}area(double scale,int precision): double\n" +
+                                         "\t{static} synchronizedreset(): void\n" +
+                                         "}\n");
+    }
+
+    @Test
+    public void writeHierarchyEdges()
+    {
+        JavaFileObject testClass = JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS);
+        Compiler compiler = javac().withProcessors(new DiagramGenerator());
+        Compilation compilation = compiler.compile(testClass);
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .contains("java.util.Comparator<|--com.foo.XmlOrderComparator\n");
+    }
+
+    @Test
+    public void membersBelowVisibilityThresholdAreLeftOut()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.visibility=protected", "-Adiagram.members=shown")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE));
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .isEqualTo("[plantuml, com-foo-class-diagram, svg]\n" +
+                                          "....\n" +
+                                          "package com.foo {\n" +
+                                          "class com.foo.MyClass{\n" +
+                                          "\t+<init>(): void\n" +
+                                          "\t#name: java.lang.String\n" +
+                                          "\t+getId(): int\n" +
+                                          "\t+setId(int id): void\n" +
+                                          "}\n" +
+                                          "\n" +
+                                          "}\n" +
+                                          "....");
+    }
+
+    @Test
+    public void membersOffRendersEmptyTypes()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.members=none")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS));
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .isEqualTo("[plantuml, com-foo-class-diagram, svg]\n" +
+                                          "....\n" +
+                                          "package com.foo {\n" +
+                                          "class com.foo.XmlOrderComparator{\n" +
+                                          "}\n" +
+                                          "interface java.util.Comparator{\n" +
+                                          "}\n" +
+                                          "java.util.Comparator<|--com.foo.XmlOrderComparator\n" +
+                                          "\n" +
+                                          "}\n" +
+                                          "hide members\n" +
+                                          "....");
+    }
+
+    @Test
+    public void scopePatternsSelectTypes()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.includes=com.one.*,com.base.**", "-Adiagram.excludes=java.**")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                                                  JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD));
+        assertTrue(compilation.errors().isEmpty());
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, "com.two", "com-two-class-diagram.adoc").isPresent());
+        String diagram = contentOf(compilation, "com.one", "com-one-class-diagram.adoc");
+        assertTrue(diagram.contains("com.base.AbstractBase<|--com.one.First\n"));
+        assertFalse(diagram.contains("java.io.Serializable"));
+    }
+
+    @Test
+    public void everyFormatWrittenToItsOwnResource()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.formats=json,dot,mermaid,plantuml")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD));
+        assertTrue(compilation.errors().isEmpty());
+        assertTrue(contentOf(compilation, "com.one", "com-one-class-diagram.adoc").contains("com.base.AbstractBase<|--com.one.First\n"));
+        assertTrue(contentOf(compilation, "com.one", "com-one-class-diagram.mmd").contains("com_base_AbstractBase <|-- com_one_First\n"));
+        assertTrue(contentOf(compilation, "com.one", "com-one-class-diagram.dot").contains("\t\"com.one.First\" -> \"com.base.AbstractBase\";\n"));
+        assertTrue(contentOf(compilation, "com.one", "com-one-class-diagram.json").contains("{\"parent\": \"com.base.AbstractBase\", \"child\": \"com.one.First\"}"));
+    }
+
+    @Test
+    public void serviceFormatSelectedByName()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.formats=plantuml,Names")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD));
+        assertTrue(compilation.errors().isEmpty());
+        assertTrue(compilation.warnings().stream().noneMatch(x -> x.getMessage(Locale.ROOT).contains(DiagramOptions.FORMATS)));
+        assertTrue(contentOf(compilation, "com.one", "com-one-class-diagram.adoc").contains("com.base.AbstractBase<|--com.one.First\n"));
+        assertEquals("com.one.First\njava.io.Serializable\n", contentOf(compilation, "com.one", "com-one-class-diagram.names"));
+    }
+
+    /**
+     * A format outside the processor, registered in the test resources: the names of the diagram's types.
+     */
+    public static class NamesFormat implements DiagramRendererFactory
+    {
+        @Override public String getName()
+        {
+            return "names";
+        }
+
+        @Override public DiagramRenderer createRenderer(boolean hideMembers)
+        {
+            return new DiagramRenderer()
+            {
+                @Override public String getExtension()
+                {
+                    return ".names";
+                }
+
+                @Override public void render(DiagramModel diagram, DiagramWriter writer) throws IOException
+                {
+                    for (TypeModel type : diagram.getTypes())
+                    {
+                        writer.write(type.getName() + "\n");
+                    }
+                }
+            };
+        }
+    }
+
+    @Test
+    public void relationsDrawnBetweenSourceTypes()
+    {
+        String holder = "package com.arg;\n" +
+                        "\n" +
+                        "public class Holder\n" +
+                        "{\n" +
+                        "    private java.util.List<com.foo.MyClass> values;\n" +
+                        "\n" +
+                        "    public com.foo.MyClass first(Creator creator)\n" +
+                        "    {\n" +
+                        "        return null;\n" +
+                        "    }\n" +
+                        "}\n";
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.relations=true")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.arg.Creator", INTERFACE_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.arg.Holder", holder));
+        assertTrue(compilation.errors().isEmpty());
+        String diagram = contentOf(compilation, "com.arg", "com-arg-class-diagram.adoc");
+        assertTrue(diagram.contains("com.arg.Creator..>com.foo.MyClass\n"));
+        assertTrue(diagram.contains("com.arg.Holder-->com.foo.MyClass\n"));
+        assertTrue(diagram.contains("com.arg.Holder..>com.arg.Creator\n"));
+        assertFalse(diagram.contains("com.arg.Holder..>com.foo.MyClass"));
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "", DiagramGenerator.RELATIONSHIP_GRAPH_NAME + ".adoc")
+                               .contentsAsUtf8String()
+                               .isEqualTo("[plantuml, project-dependency-graph, svg]\n" +
+                                          "....\n" +
+                                          "interface com.arg.Creator{\n" +
+                                          "}\n" +
+                                          "class com.arg.Holder{\n" +
+                                          "}\n" +
+                                          "class com.foo.MyClass{\n" +
+                                          "}\n" +
+                                          "com.arg.Creator..>com.foo.MyClass\n" +
+                                          "com.arg.Holder-->com.foo.MyClass\n" +
+                                          "com.arg.Holder..>com.arg.Creator\n" +
+                                          "\n" +
+                                          "hide members\n" +
+                                          "....");
+    }
+
+    @Test
+    public void oversizedPackageSplitIntoParts()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.maxNodes=2")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS));
+        assertTrue(compilation.errors().isEmpty());
+        assertEquals("[plantuml, com-foo-class-diagram, svg]\n" +
+                     "....\n" +
+                     "package com.foo {\n" +
+                     "class com_foo_class_diagram_1{\n" +
+                     "}\n" +
+                     "class com_foo_class_diagram_2{\n" +
+                     "}\n" +
+                     "\n" +
+                     "}\n" +
+                     "hide members\n" +
+                     "....", contentOf(compilation, "com.foo", "com-foo-class-diagram.adoc"));
+        assertTrue(contentOf(compilation, "com.foo", "com-foo-class-diagram-1.adoc").contains("class com.foo.MyClass{\n"));
+        String second = contentOf(compilation, "com.foo", "com-foo-class-diagram-2.adoc");
+        assertTrue(second.contains("java.util.Comparator<|--com.foo.XmlOrderComparator\n"));
+        assertFalse(second.contains("com.foo.MyClass"));
+    }
+
+    private static List<JavaFileObject> allSources()
+    {
+        return Arrays.asList(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                             JavaFileObjects.forSourceString("com.arg.Creator", INTERFACE_SOURCE_CODE),
+                             JavaFileObjects.forSourceString("javax.xml.bind.annotation.XmlEnum", ANNOTATION),
+                             JavaFileObjects.forSourceString("org.mule.tooling.editor.model.element.MetaDataKeyParamAffectsType", ENUM_WITH_ANNOTATION),
+                             JavaFileObjects.forSourceString("com.foo.ClassWithInner", CLASS_WITH_INNER),
+                             JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS),
+                             JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                             JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                             JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD));
+    }
+
+    /**
+     * Every generated file by name, each byte as one char, so equal maps mean byte identical outputs.
+     */
+    private static Map<String, String> outputs(Compilation compilation)
+    {
+        assertTrue(compilation.errors().isEmpty());
+        Map<String, String> outputs = new TreeMap<>();
+        for (JavaFileObject file : compilation.generatedFiles())
+        {
+            try (InputStream input = file.openInputStream())
+            {
+                outputs.put(file.getName(), new String(ByteStreams.toByteArray(input), StandardCharsets.ISO_8859_1));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return outputs;
+    }
+
+    @Test
+    public void outputByteIdenticalWhateverTheSourceOrder()
+    {
+        String[] options = {"-Adiagram.formats=plantuml,mermaid,dot,json", "-Adiagram.relations=true", "-Adiagram.maxNodes=3"};
+        List<JavaFileObject> reversed = new ArrayList<>(allSources());
+        Collections.reverse(reversed);
+        Map<String, String> expected = outputs(javac().withProcessors(new DiagramGenerator()).withOptions((Object[]) options).compile(allSources()));
+        assertTrue(expected.size() > 20);
+        assertEquals(expected, outputs(javac().withProcessors(new DiagramGenerator()).withOptions((Object[]) options).compile(reversed)));
+        List<Object> parallel = new ArrayList<>(Arrays.asList(options));
+        parallel.add("-Adiagram.threads=4");
+        assertEquals(expected, outputs(javac().withProcessors(new DiagramGenerator()).withOptions(parallel).compile(reversed)));
+    }
+
+    @Test
+    public void wholeProgramByteIdenticalWhateverTheSourceOrder()
+    {
+        List<JavaFileObject> reversed = new ArrayList<>(allSources());
+        Collections.reverse(reversed);
+        Map<String, String> expected = outputs(javac().withProcessors(new DiagramGenerator()).withOptions("-Adiagram.wholeProgram=true").compile(allSources()));
+        assertEquals(expected, outputs(javac().withProcessors(new DiagramGenerator()).withOptions("-Adiagram.wholeProgram=true").compile(reversed)));
+    }
+
+    @Test
+    public void typesGeneratedInLaterRoundsMergedIntoOneDiagram()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator(), new GeneratingProcessor("com.foo.MyClassFactory"))
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE));
+        assertTrue(compilation.errors().isEmpty());
+        assertEquals(Collections.emptyList(), compilation.warnings()
+                                                         .stream()
+                                                         .map(warning -> warning.getMessage(Locale.ROOT))
+                                                         .filter(message -> !message.startsWith("Supported source version"))
+                                                         .collect(Collectors.toList()));
+        String diagram = contentOf(compilation, "com.foo", "com-foo-class-diagram.adoc");
+        assertTrue(diagram.contains("class com.foo.MyClass{\n"));
+        assertTrue(diagram.contains("class com.foo.MyClassFactory{\n"));
+    }
+
+    @Test
+    public void flushedPackagesLeaveLaterTypesOut()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator(), new GeneratingProcessor("com.foo.MyClassFactory", "com.gen.Generated"))
+                                         .withOptions("-Adiagram.flushTypes=1")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE));
+        assertTrue(compilation.errors().isEmpty());
+        assertThat(compilation).hadWarningContaining("Package com.foo was already rendered, leaving com.foo.MyClassFactory out of its diagram");
+        assertFalse(contentOf(compilation, "com.foo", "com-foo-class-diagram.adoc").contains("MyClassFactory"));
+        assertTrue(contentOf(compilation, "com.gen", "com-gen-class-diagram.adoc").contains("class com.gen.Generated{\n"));
+    }
+
+    @Test
+    public void hierarchySharedAcrossPackages()
+    {
+        DiagramGenerator generator = new DiagramGenerator();
+        Compilation compilation = javac().withProcessors(generator)
+                                         .withOptions("-Adiagram.incremental=false")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                                                  JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD));
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.one", "com-one-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .contains("java.io.Serializable<|--com.base.AbstractBase\n");
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.two", "com-two-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .contains("java.io.Serializable<|--com.base.AbstractBase\n");
+        assertEquals(4, generator.getHierarchyIndex().getMisses());
+        assertEquals(2, generator.getHierarchyIndex().getHits());
+    }
+
+    @Test
+    public void externalTypesRenderedOncePerCompilation()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.metrics=true")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                                                  JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD));
+        for (String packageName : new String[] {"com.base", "com.one", "com.two"})
+        {
+            assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, packageName, packageName.replace(".", "-") + "-class-diagram.adoc")
+                                   .contentsAsUtf8String()
+                                   .contains("interface java.io.Serializable{\n}\n");
+        }
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, DiagramGenerator.METRICS_RESOURCE)
+                               .contentsAsUtf8String()
+                               .contains("\"typeBlockCache\": {\n    \"hits\": 2,\n    \"misses\": 1\n  }");
+    }
+
+    @Test
+    public void externalTypesAsStubs()
+    {
+        JavaFileObject testClass = JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS);
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.externalTypes=stub")
+                                         .compile(testClass);
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, "com.foo", "com-foo-class-diagram.adoc")
+                               .contentsAsUtf8String()
+                               .contains("\t+compare(java.lang.Object from,java.lang.Object to): int\n" +
+                                         "}\n" +
+                                         "interface java.util.Comparator{\n" +
+                                         "}\n" +
+                                         "java.util.Comparator<|--com.foo.XmlOrderComparator\n");
+    }
+
+    @Test
+    public void wholeProgramDiagram()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.wholeProgram=true")
+                                         .compile(JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                                  JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                                                  JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD));
+        assertTrue(compilation.errors().isEmpty());
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, "com.one", "com-one-class-diagram.adoc").isPresent());
+        String diagram = contentOf(compilation, "", WholeProgramDiagram.DIAGRAM_NAME + ".adoc");
+        assertTrue(diagram.startsWith("[plantuml, whole-program-class-diagram, svg]\n....\n"));
+        assertTrue(diagram.endsWith("hide members\n...."));
+        for (String expected : new String[] {"class com.base.AbstractBase{\n", "class com.one.First{\n", "class com.two.Second{\n",
+                                             "interface java.io.Serializable{\n", "com.base.AbstractBase<|--com.one.First\n",
+                                             "com.base.AbstractBase<|--com.two.Second\n"})
+        {
+            assertTrue(expected, diagram.contains(expected));
+        }
+        assertEquals(diagram.indexOf("java.io.Serializable<|--com.base.AbstractBase\n"),
+                     diagram.lastIndexOf("java.io.Serializable<|--com.base.AbstractBase\n"));
+        assertEquals(diagram.indexOf("interface java.io.Serializable{"), diagram.lastIndexOf("interface java.io.Serializable{"));
+    }
+
+    @Test
+    public void wholeProgramSourceInterfaceReachedThroughImplementorRenderedInFull()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.wholeProgram=true", "-Adiagram.externalTypes=stub")
+                                         .compile(JavaFileObjects.forSourceString("p.A", "package p;\n\npublic class A implements I\n{\n    public void run()\n    {\n    }\n}\n"),
+                                                  JavaFileObjects.forSourceString("p.I", "package p;\n\npublic interface I\n{\n    void run();\n}\n"));
+        assertTrue(compilation.errors().isEmpty());
+        String diagram = contentOf(compilation, "", WholeProgramDiagram.DIAGRAM_NAME + ".adoc");
+        assertTrue(diagram, diagram.contains("interface p.I{\n\trun(): void\n}\n"));
+        assertEquals(diagram.indexOf("interface p.I{"), diagram.lastIndexOf("interface p.I{"));
+    }
+
+    @Test
+    public void parallelRenderingMatchesSequential()
+    {
+        JavaFileObject[] sources = {JavaFileObjects.forSourceString("com.base.AbstractBase", BASE_CLASS),
+                                    JavaFileObjects.forSourceString("com.one.First", FIRST_CHILD),
+                                    JavaFileObjects.forSourceString("com.two.Second", SECOND_CHILD),
+                                    JavaFileObjects.forSourceString("com.foo.ClassWithInner", CLASS_WITH_INNER)};
+        Compilation sequential = javac().withProcessors(new DiagramGenerator()).compile(sources);
+        Compilation parallel = javac().withProcessors(new DiagramGenerator()).withOptions("-Adiagram.threads=3").compile(sources);
+        assertTrue(parallel.errors().isEmpty());
+        for (String packageName : new String[] {"com.base", "com.one", "com.two", "com.foo"})
+        {
+            String diagram = packageName.replace(".", "-") + "-class-diagram.adoc";
+            assertEquals(contentOf(sequential, packageName, diagram), contentOf(parallel, packageName, diagram));
+        }
+    }
+
+    private static String contentOf(Compilation compilation, String packageName, String fileName)
+    {
+        try
+        {
+            return compilation.generatedFile(StandardLocation.CLASS_OUTPUT, packageName, fileName).get().getCharContent(true).toString();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void reportMetrics()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.metrics=true")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS));
+        assertThat(compilation).hadNoteContaining("Diagrams: 1 written, 0 skipped; 3 types");
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, DiagramGenerator.METRICS_RESOURCE)
+                               .contentsAsUtf8String()
+                               .contains("\"edges\": 1,");
+    }
+
+    @Test
+    public void metricsCountExtractedModelsWhateverTheFormats()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .withOptions("-Adiagram.metrics=true", "-Adiagram.formats=json,plantuml,mermaid")
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.foo.XmlOrderComparator", CLASS_WITH_GENERICS));
+        assertThat(compilation).hadNoteContaining("Diagrams: 3 written, 0 skipped; 3 types");
+        assertThat(compilation).generatedFile(StandardLocation.CLASS_OUTPUT, DiagramGenerator.METRICS_RESOURCE)
+                               .contentsAsUtf8String()
+                               .contains("\"edges\": 1,");
+    }
+
+    @Test
+    public void metricsAreOptIn()
+    {
+        Compilation compilation = javac().withProcessors(new DiagramGenerator())
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE));
+        assertThat(compilation).hadNoteCount(0);
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, DiagramGenerator.METRICS_RESOURCE).isPresent());
+    }
+
+    @Test
+    public void unchangedPackagesAreNotRegenerated() throws IOException
+    {
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        File base = writeSource(sources, "com/base/AbstractBase.java", BASE_CLASS);
+        File first = writeSource(sources, "com/one/First.java", FIRST_CHILD);
+        assertTrue(compile(classes, base, first));
+        File baseDiagram = new File(classes, "com/base/com-base-class-diagram.adoc");
+        File firstDiagram = new File(classes, "com/one/com-one-class-diagram.adoc");
+        assertTrue(baseDiagram.setLastModified(1000L));
+        assertTrue(firstDiagram.setLastModified(1000L));
+
+        writeSource(sources, "com/one/First.java", FIRST_CHILD.replace("{\n}", "{\n    private int id;\n}"));
+        assertTrue(compile(classes, base, first));
+        assertEquals(1000L, baseDiagram.lastModified());
+        assertTrue(firstDiagram.lastModified() > 1000L);
+    }
+
+    @Test
+    public void deletedDiagramsAreRegenerated() throws IOException
+    {
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        File base = writeSource(sources, "com/base/AbstractBase.java", BASE_CLASS);
+        File first = writeSource(sources, "com/one/First.java", FIRST_CHILD);
+        assertTrue(compile(classes, base, first));
+        File firstDiagram = new File(classes, "com/one/com-one-class-diagram.adoc");
+        assertTrue(firstDiagram.delete());
+
+        assertTrue(compile(classes, base, first));
+        assertTrue(firstDiagram.exists());
+    }
+
+    @Test
+    public void deletedPartsRegeneratedAndLeftoverPartsEmptied() throws IOException
+    {
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        File[] files = {writeSource(sources, "com/split/A.java", "package com.split;\n\npublic class A\n{\n}\n"),
+                        writeSource(sources, "com/split/B.java", "package com.split;\n\npublic class B\n{\n}\n"),
+                        writeSource(sources, "com/split/C.java", "package com.split;\n\npublic class C\n{\n}\n")};
+        assertTrue(compile(classes, Collections.singletonList("-Adiagram.maxNodes=2"), files));
+        File index = new File(classes, "com/split/com-split-class-diagram.adoc");
+        File firstPart = new File(classes, "com/split/com-split-class-diagram-1.adoc");
+        File secondPart = new File(classes, "com/split/com-split-class-diagram-2.adoc");
+        assertTrue(index.isFile() && firstPart.isFile());
+        assertTrue(secondPart.delete());
+
+        assertTrue(compile(classes, Collections.singletonList("-Adiagram.maxNodes=2"), files));
+        assertTrue(secondPart.isFile());
+
+        assertTrue(compile(classes, files));
+        assertTrue(index.length() > 0);
+        assertEquals(0, firstPart.length());
+        assertEquals(0, secondPart.length());
+    }
+
+    @Test
+    public void modelCacheReusedAcrossBuilds() throws IOException
+    {
+        File sources = temporaryFolder.newFolder("src");
+        File cache = temporaryFolder.newFolder("cache");
+        File base = writeSource(sources, "com/base/AbstractBase.java", BASE_CLASS);
+        File first = writeSource(sources, "com/one/First.java", FIRST_CHILD);
+        List<String> options = Arrays.asList("-Adiagram.cacheDir=" + cache.getPath(), "-Adiagram.incremental=false", "-Adiagram.metrics=true");
+        File cold = temporaryFolder.newFolder("cold");
+        assertTrue(compile(cold, options, base, first));
+        assertTrue(new File(cache, ModelCache.FILE_NAME).isFile());
+        assertTrue(read(new File(cold, DiagramGenerator.METRICS_RESOURCE)).contains("\"modelCacheHits\": 0,\n    \"modelCacheMisses\": 2,"));
+
+        writeSource(sources, "com/one/First.java", FIRST_CHILD.replace("{\n}", "{\n    private int id;\n}"));
+        File warm = temporaryFolder.newFolder("warm");
+        assertTrue(compile(warm, options, base, first));
+        assertTrue(read(new File(warm, DiagramGenerator.METRICS_RESOURCE)).contains("\"modelCacheHits\": 1,\n    \"modelCacheMisses\": 1,"));
+        assertEquals(read(new File(cold, "com/base/com-base-class-diagram.adoc")), read(new File(warm, "com/base/com-base-class-diagram.adoc")));
+        assertTrue(read(new File(warm, "com/one/com-one-class-diagram.adoc")).contains("\t-id: int\n"));
+    }
+
+    private static String read(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void diagramsDeclareTheirPackageTypesAsOriginatingElements()
+    {
+        Map<String, List<String>> originatingElements = new HashMap<>();
+        DiagramGenerator generator = new RecordingDiagramGenerator(originatingElements);
+        Compilation compilation = javac().withProcessors(generator)
+                                         .compile(JavaFileObjects.forSourceString("com.foo.MyClass", CLASS_SOURCE_CODE),
+                                                  JavaFileObjects.forSourceString("com.foo.ClassWithInner", CLASS_WITH_INNER),
+                                                  JavaFileObjects.forSourceString("com.arg.Creator", INTERFACE_SOURCE_CODE));
+        assertTrue(compilation.errors().isEmpty());
+        assertEquals(Arrays.asList("com.foo.ClassWithInner", "com.foo.MyClass"), originatingElements.get("com-foo-class-diagram.adoc"));
+        assertEquals(Collections.singletonList("com.arg.Creator"), originatingElements.get("com-arg-class-diagram.adoc"));
+    }
+
+    @Test
+    public void registeredAsAggregatingIncrementalProcessor() throws IOException
+    {
+        try (InputStream input = DiagramGenerator.class.getResourceAsStream("/META-INF/gradle/incremental.annotation.processors"))
+        {
+            String registration = new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8).trim();
+            assertEquals(DiagramGenerator.class.getName() + ",aggregating", registration);
+        }
+    }
+
+    @SupportedAnnotationTypes("*")
+    @SupportedSourceVersion(SourceVersion.RELEASE_8)
+    private static class RecordingDiagramGenerator extends DiagramGenerator
+    {
+        private final Map<String, List<String>> originatingElements;
+
+        RecordingDiagramGenerator(Map<String, List<String>> originatingElements)
+        {
+            this.originatingElements = originatingElements;
+        }
+
+        @Override public synchronized void init(ProcessingEnvironment processingEnv)
+        {
+            super.init(recordingOriginatingElements(processingEnv, originatingElements));
+        }
+    }
+
+    /**
+     * Generates an empty class of each given name in the first round, as other processors of a build would.
+     */
+    @SupportedAnnotationTypes("*")
+    @SupportedSourceVersion(SourceVersion.RELEASE_8)
+    private static class GeneratingProcessor extends AbstractProcessor
+    {
+        private final String[] typeNames;
+        private boolean generated;
+
+        GeneratingProcessor(String... typeNames)
+        {
+            this.typeNames = typeNames;
+        }
+
+        @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+        {
+            if (generated)
+            {
+                return false;
+            }
+            generated = true;
+            for (String typeName : typeNames)
+            {
+                int dot = typeName.lastIndexOf('.');
+                try (Writer writer = processingEnv.getFiler().createSourceFile(typeName).openWriter())
+                {
+                    writer.write("package " + typeName.substring(0, dot) + ";\n\npublic class " + typeName.substring(dot + 1) + "\n{\n}\n");
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return false;
+        }
+    }
+
+    private static ProcessingEnvironment recordingOriginatingElements(ProcessingEnvironment processingEnv, Map<String, List<String>> originatingElements)
+    {
+        Filer filer = (Filer) Proxy.newProxyInstance(Filer.class.getClassLoader(), new Class<?>[] {Filer.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("createResource"))
+            {
+                originatingElements.put(args[2].toString(), Arrays.stream((Element[]) args[3])
+                                                                  .map(Object::toString)
+                                                                  .sorted()
+                                                                  .collect(Collectors.toList()));
+            }
+            return invoke(method, processingEnv.getFiler(), args);
+        });
+        return (ProcessingEnvironment) Proxy.newProxyInstance(ProcessingEnvironment.class.getClassLoader(), new Class<?>[] {ProcessingEnvironment.class}, (proxy, method, args) ->
+                method.getName().equals("getFiler") ? filer : invoke(method, processingEnv, args));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private static File writeSource(File root, String path, String content) throws IOException
+    {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static boolean compile(File classes, File... sources) throws IOException
+    {
+        return compile(classes, Collections.emptyList(), sources);
+    }
+
+    private static boolean compile(File classes, List<String> processorOptions, File... sources) throws IOException
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8))
+        {
+            List<String> options = new ArrayList<>(Arrays.asList("-d", classes.getPath(), "-proc:only"));
+            options.addAll(processorOptions);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, new DiagnosticCollector<>(), options,
+                                                                 null, fileManager.getJavaFileObjects(sources));
+            task.setProcessors(Collections.singletonList(new DiagramGenerator()));
+            return task.call();
+        }
+    }
 }
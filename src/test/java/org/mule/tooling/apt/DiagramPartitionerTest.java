@@ -0,0 +1,116 @@
+package org.mule.tooling.apt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tooling.apt.model.DiagramModel;
+import org.mule.tooling.apt.model.ModelCodec;
+import org.mule.tooling.apt.model.Relation;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class DiagramPartitionerTest
+{
+    private static TypeModel type(String name)
+    {
+        return new TypeModel(name, TypeModel.Kind.CLASS, null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static DiagramModel twoHierarchies()
+    {
+        DiagramModel.Builder diagram = DiagramModel.builder("p-class-diagram", "p");
+        for (String name : new String[] {"p.A1", "p.A2", "p.A3", "p.B1", "p.B2"})
+        {
+            diagram.addType(type(name));
+        }
+        diagram.addEdge("java.io.Serializable", "p.A1");
+        diagram.addEdge("p.A1", "p.A2");
+        diagram.addEdge("p.A2", "p.A3");
+        diagram.addEdge("p.B1", "p.B2");
+        diagram.addRelation("p.A3", "p.B1", Relation.DEPENDENCY);
+        return diagram.build();
+    }
+
+    @Test
+    public void diagramWithinBudgetKept()
+    {
+        DiagramModel diagram = twoHierarchies();
+        List<DiagramModel> diagrams = new DiagramPartitioner(6, 5, ProcessorMetrics.create(false)).partition(diagram);
+        assertEquals(1, diagrams.size());
+        assertSame(diagram, diagrams.get(0));
+    }
+
+    @Test
+    public void componentsSplitIntoPartsLinkedByAnIndex()
+    {
+        List<DiagramModel> diagrams = new DiagramPartitioner(4, 0, ProcessorMetrics.create(false)).partition(twoHierarchies());
+        assertEquals(3, diagrams.size());
+
+        DiagramModel index = diagrams.get(0);
+        assertEquals("p-class-diagram", index.getName());
+        assertEquals("p_class_diagram_1", index.getTypes().get(0).getName());
+        assertEquals("p_class_diagram_2", index.getTypes().get(1).getName());
+        assertEquals(0, index.getEdgeCount());
+        assertEquals(1, index.getRelationCount());
+        assertEquals("p_class_diagram_1", index.getRelationSource(0));
+        assertEquals("p_class_diagram_2", index.getRelationTarget(0));
+
+        DiagramModel first = diagrams.get(1);
+        assertEquals("p-class-diagram-1", first.getName());
+        assertEquals(3, first.getTypes().size());
+        assertEquals(3, first.getEdgeCount());
+        assertEquals("java.io.Serializable", first.getEdgeParent(0));
+        assertEquals(0, first.getRelationCount());
+
+        DiagramModel second = diagrams.get(2);
+        assertEquals("p-class-diagram-2", second.getName());
+        assertEquals(2, second.getTypes().size());
+        assertEquals(1, second.getEdgeCount());
+    }
+
+    @Test
+    public void oversizedComponentSplitWithinBudget()
+    {
+        DiagramModel.Builder builder = DiagramModel.builder("big", "p");
+        for (int i = 0; i < 60; i++)
+        {
+            builder.addType(type("p.T" + i));
+        }
+        for (int cluster = 0; cluster < 6; cluster++)
+        {
+            for (int i = 1; i < 10; i++)
+            {
+                builder.addEdge("p.T" + cluster * 10, "p.T" + (cluster * 10 + i));
+                builder.addRelation("p.T" + (cluster * 10 + i), "p.T" + (cluster * 10 + (i % 9) + 1), Relation.ASSOCIATION);
+            }
+            builder.addRelation("p.T" + cluster * 10, "p.T" + ((cluster + 1) % 6) * 10, Relation.DEPENDENCY);
+        }
+        List<DiagramModel> diagrams = new DiagramPartitioner(12, 0, ProcessorMetrics.create(false)).partition(builder.build());
+
+        Set<String> types = new HashSet<>();
+        for (DiagramModel part : diagrams.subList(1, diagrams.size()))
+        {
+            assertTrue(part.getTypes().size() <= 12);
+            for (TypeModel type : part.getTypes())
+            {
+                assertTrue(types.add(type.getName()));
+            }
+        }
+        assertEquals(60, types.size());
+        assertEquals(diagrams.size() - 1, diagrams.get(0).getTypes().size());
+        assertEquals(7, diagrams.size());
+        List<DiagramModel> again = new DiagramPartitioner(12, 0, ProcessorMetrics.create(false)).partition(builder.build());
+        for (int i = 0; i < diagrams.size(); i++)
+        {
+            assertArrayEquals(ModelCodec.encode(diagrams.get(i)), ModelCodec.encode(again.get(i)));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.mule.tooling.apt;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.testing.compile.JavaFileObjects;
+
+import org.mule.tooling.apt.model.Interner;
+import org.mule.tooling.apt.model.MemberModel;
+import org.mule.tooling.apt.model.ModelCodec;
+import org.mule.tooling.apt.model.Modifiers;
+import org.mule.tooling.apt.model.TypeModel;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.source.util.Trees;
+
+public class ModelCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static byte[] key(int value)
+    {
+        byte[] key = new byte[ModelCache.KEY_SIZE];
+        key[0] = (byte) value;
+        return key;
+    }
+
+    private static TypeModel type(String name)
+    {
+        return new TypeModel(name, TypeModel.Kind.CLASS, "com.foo.Base", Collections.singletonList("java.io.Serializable"),
+                             Arrays.asList(MemberModel.field("id", Modifiers.PRIVATE, "int"),
+                                           MemberModel.method("getId", Modifiers.PUBLIC, "int", new String[0], new String[0])),
+                             Collections.emptyList());
+    }
+
+    private static ModelCache open(Path directory, long maxBytes)
+    {
+        return ModelCache.open(directory, maxBytes, new Interner(), ProcessorMetrics.create(false));
+    }
+
+    @Test
+    public void storedModelsAreReadBack() throws IOException
+    {
+        Path directory = temporaryFolder.newFolder().toPath();
+        ModelCache cache = open(directory, 1024 * 1024);
+        cache.put(key(1), type("com.foo.First"));
+        cache.put(key(2), type("com.foo.Second"));
+        cache.store();
+
+        ModelCache reopened = open(directory, 1024 * 1024);
+        assertEquals(2, reopened.size());
+        assertEquals("com.foo.Second", reopened.get(key(2)).getName());
+        assertEquals(new String(ModelCodec.encode(type("com.foo.First")), "ISO-8859-1"),
+                     new String(ModelCodec.encode(reopened.get(key(1))), "ISO-8859-1"));
+        assertNull(reopened.get(key(3)));
+    }
+
+    @Test
+    public void leastRecentlyUsedModelsAreEvicted() throws IOException
+    {
+        Path directory = temporaryFolder.newFolder().toPath();
+        int entrySize = ModelCodec.encode(type("com.foo.T1")).length + ModelCache.KEY_SIZE + 4;
+        ModelCache cache = open(directory, 12 + 2 * entrySize);
+        cache.put(key(1), type("com.foo.T1"));
+        cache.put(key(2), type("com.foo.T2"));
+        cache.get(key(1));
+        cache.put(key(3), type("com.foo.T3"));
+        cache.store();
+
+        ModelCache reopened = open(directory, 12 + 2 * entrySize);
+        assertNotNull(reopened.get(key(1)));
+        assertNull(reopened.get(key(2)));
+        assertNotNull(reopened.get(key(3)));
+        assertEquals(12 + 2 * entrySize, Files.size(directory.resolve(ModelCache.FILE_NAME)));
+    }
+
+    @Test
+    public void corruptRecordIsAMiss() throws IOException
+    {
+        Path directory = temporaryFolder.newFolder().toPath();
+        ModelCache cache = open(directory, 1024 * 1024);
+        cache.put(key(1), type("com.foo.First"));
+        cache.store();
+        Path file = directory.resolve(ModelCache.FILE_NAME);
+        byte[] bytes = Files.readAllBytes(file);
+        Arrays.fill(bytes, 12 + ModelCache.KEY_SIZE + 4, bytes.length, (byte) 0xFF);
+        Files.write(file, bytes);
+
+        ModelCache reopened = open(directory, 1024 * 1024);
+        assertEquals(1, reopened.size());
+        assertNull(reopened.get(key(1)));
+        assertEquals(0, reopened.size());
+        reopened.put(key(2), type("com.foo.Second"));
+        reopened.store();
+
+        assertEquals("com.foo.Second", open(directory, 1024 * 1024).get(key(2)).getName());
+    }
+
+    @Test
+    public void unreadableCacheStartsEmpty() throws IOException
+    {
+        Path directory = temporaryFolder.newFolder().toPath();
+        Files.write(directory.resolve(ModelCache.FILE_NAME), new byte[] {1, 2, 3});
+        assertEquals(0, open(directory, 1024).size());
+    }
+
+    @Test
+    public void warmLookupReadsNoEnclosedElements()
+    {
+        WarmLookup lookup = new WarmLookup();
+        assertThat(javac().withProcessors(lookup)
+                          .compile(JavaFileObjects.forSourceString("com.foo.Cached", "package com.foo;\n" +
+                                                                                     "\n" +
+                                                                                     "public class Cached implements Runnable\n" +
+                                                                                     "{\n" +
+                                                                                     "    private int count;\n" +
+                                                                                     "\n" +
+                                                                                     "    public void run()\n" +
+                                                                                     "    {\n" +
+                                                                                     "    }\n" +
+                                                                                     "}\n"))).succeeded();
+
+        assertEquals(2, lookup.enclosedElementReads.size());
+        assertTrue(lookup.enclosedElementReads.get(0) > 0);
+        assertEquals(0, (int) lookup.enclosedElementReads.get(1));
+        assertEquals(new String(ModelCodec.encode(lookup.models.get(0)), StandardCharsets.ISO_8859_1),
+                     new String(ModelCodec.encode(lookup.models.get(1)), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Extracts one type twice through a cache, counting the reads of its enclosed elements on each pass.
+     */
+    @SupportedAnnotationTypes("*")
+    @SupportedSourceVersion(SourceVersion.RELEASE_8)
+    private static class WarmLookup extends AbstractProcessor
+    {
+        private final List<Integer> enclosedElementReads = new ArrayList<>();
+        private final List<TypeModel> models = new ArrayList<>();
+
+        @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+        {
+            if (!models.isEmpty())
+            {
+                return false;
+            }
+            TypeElement type = processingEnv.getElementUtils().getTypeElement("com.foo.Cached");
+            JavaFileObject source = Trees.instance(processingEnv).getPath(type).getCompilationUnit().getSourceFile();
+            int[] reads = new int[1];
+            TypeElement counted = (TypeElement) Proxy.newProxyInstance(TypeElement.class.getClassLoader(), new Class<?>[] {TypeElement.class}, (proxy, method, args) ->
+            {
+                if (method.getName().equals("getEnclosedElements"))
+                {
+                    reads[0]++;
+                }
+                try
+                {
+                    return method.invoke(type, args);
+                }
+                catch (InvocationTargetException e)
+                {
+                    throw e.getCause();
+                }
+            });
+            SourceTypeFingerprint fingerprint = new SourceTypeFingerprint(processingEnv, "")
+            {
+                @Override public byte[] of(TypeElement typeElement)
+                {
+                    return of(source, typeElement);
+                }
+            };
+            CachingTypeModelExtractor extractor = new CachingTypeModelExtractor(new Interner(), DiagramScope.all(),
+                                                                                ModelCache.inMemory(1024 * 1024, new Interner(), ProcessorMetrics.create(false)),
+                                                                                fingerprint);
+            for (int i = 0; i < 2; i++)
+            {
+                reads[0] = 0;
+                models.add(extractor.extract(counted));
+                enclosedElementReads.add(reads[0]);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.mule.tooling.apt.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchDiagramGeneratorTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void modulesGeneratedIntoOneIndex() throws IOException
+    {
+        Path root = temporaryFolder.getRoot().toPath();
+        write(root, "core/src/main/java/com/base/AbstractBase.java", "package com.base;\n\npublic abstract class AbstractBase\n{\n}\n");
+        write(root, "core/src/main/java/com/base/util/Strings.java", "package com.base.util;\n\npublic final class Strings\n{\n}\n");
+        write(root, "app/src/main/java/com/app/Main.java", "package com.app;\n\npublic class Main extends com.base.AbstractBase\n{\n}\n");
+        write(root, "broken/src/main/java/com/broken/Broken.java", "package com.broken;\n\npublic class Broken\n{\n    private int\n}\n");
+
+        List<Path> noPath = Collections.emptyList();
+        List<Path> coreSources = Collections.singletonList(root.resolve("core/src/main/java"));
+        BatchDiagramGenerator generator = new BatchDiagramGenerator(2, Collections.singletonMap("diagram.formats", "plantuml,mermaid"));
+        BatchDiagramGenerator.Result result = generator.generate(Arrays.asList(BatchDiagramGenerator.Module.maven(root, root.resolve("core"), noPath, noPath),
+                                                                               BatchDiagramGenerator.Module.maven(root, root.resolve("broken"), noPath, noPath),
+                                                                               BatchDiagramGenerator.Module.maven(root, root.resolve("app"), coreSources, noPath)),
+                                                                 root);
+
+        assertEquals(Arrays.asList("app", "broken", "core"), Arrays.asList(result.getModules().get(0).getName(), result.getModules().get(1).getName(),
+                                                                          result.getModules().get(2).getName()));
+        assertFalse(result.getModules().get(1).getErrors().isEmpty());
+        assertEquals("{\n" +
+                     "  \"modules\": [\n" +
+                     "    {\"name\": \"app\", \"errors\": 0, \"diagrams\": [\n" +
+                     "      {\"package\": \"com.app\", \"files\": [\"app/target/classes/com/app/com-app-class-diagram.adoc\", \"app/target/classes/com/app/com-app-class-diagram.mmd\"]}\n" +
+                     "    ]},\n" +
+                     "    {\"name\": \"broken\", \"errors\": 1, \"diagrams\": []},\n" +
+                     "    {\"name\": \"core\", \"errors\": 0, \"diagrams\": [\n" +
+                     "      {\"package\": \"com.base\", \"files\": [\"core/target/classes/com/base/com-base-class-diagram.adoc\", \"core/target/classes/com/base/com-base-class-diagram.mmd\"]},\n" +
+                     "      {\"package\": \"com.base.util\", \"files\": [\"core/target/classes/com/base/util/com-base-util-class-diagram.adoc\", \"core/target/classes/com/base/util/com-base-util-class-diagram.mmd\"]}\n" +
+                     "    ]}\n" +
+                     "  ]\n" +
+                     "}\n", read(root.resolve(BatchDiagramGenerator.INDEX_FILE)));
+        assertTrue(read(root.resolve("app/target/classes/com/app/com-app-class-diagram.adoc")).contains("com.base.AbstractBase<|--com.app.Main\n"));
+        assertTrue(Files.isRegularFile(root.resolve("core/target/classes/com/base/util/com-base-util-class-diagram.mmd")));
+    }
+
+    @Test
+    public void sameNamedModulesAndDiagramPartsListed() throws IOException
+    {
+        Path root = temporaryFolder.getRoot().toPath();
+        write(root, "a/core/src/main/java/com/a/A.java", "package com.a;\n\npublic class A\n{\n}\n");
+        write(root, "a/core/src/main/java/com/a/B.java", "package com.a;\n\npublic class B\n{\n}\n");
+        write(root, "a/core/src/main/java/com/a/C.java", "package com.a;\n\npublic class C\n{\n}\n");
+        write(root, "b/core/src/main/java/com/b/D.java", "package com.b;\n\npublic class D\n{\n}\n");
+
+        List<Path> noPath = Collections.emptyList();
+        BatchDiagramGenerator generator = new BatchDiagramGenerator(2, Collections.singletonMap("diagram.maxNodes", "2"));
+        generator.generate(Arrays.asList(BatchDiagramGenerator.Module.maven(root, root.resolve("a/core"), noPath, noPath),
+                                         BatchDiagramGenerator.Module.maven(root, root.resolve("b/core"), noPath, noPath)),
+                           root);
+
+        assertEquals("{\n" +
+                     "  \"modules\": [\n" +
+                     "    {\"name\": \"a/core\", \"errors\": 0, \"diagrams\": [\n" +
+                     "      {\"package\": \"com.a\", \"files\": [\"a/core/target/classes/com/a/com-a-class-diagram.adoc\", \"a/core/target/classes/com/a/com-a-class-diagram-1.adoc\", \"a/core/target/classes/com/a/com-a-class-diagram-2.adoc\"]}\n" +
+                     "    ]},\n" +
+                     "    {\"name\": \"b/core\", \"errors\": 0, \"diagrams\": [\n" +
+                     "      {\"package\": \"com.b\", \"files\": [\"b/core/target/classes/com/b/com-b-class-diagram.adoc\"]}\n" +
+                     "    ]}\n" +
+                     "  ]\n" +
+                     "}\n", read(root.resolve(BatchDiagramGenerator.INDEX_FILE)));
+        assertTrue(Files.isRegularFile(root.resolve("a/core/target/classes/com/a/com-a-class-diagram-2.adoc")));
+    }
+
+    @Test
+    public void failingModuleListedWithItsErrorAndOthersIndexed() throws IOException
+    {
+        Path root = temporaryFolder.getRoot().toPath();
+        write(root, "core/src/main/java/com/base/AbstractBase.java", "package com.base;\n\npublic abstract class AbstractBase\n{\n}\n");
+        write(root, "blocked/src/main/java/com/blocked/Blocked.java", "package com.blocked;\n\npublic class Blocked\n{\n}\n");
+        write(root, "blocked/target/classes", "not a directory");
+
+        List<Path> noPath = Collections.emptyList();
+        BatchDiagramGenerator.Result result = new BatchDiagramGenerator(2, Collections.emptyMap())
+                .generate(Arrays.asList(BatchDiagramGenerator.Module.maven(root, root.resolve("blocked"), noPath, noPath),
+                                        BatchDiagramGenerator.Module.maven(root, root.resolve("core"), noPath, noPath)),
+                          root);
+
+        assertEquals(1, result.getModules().get(0).getErrors().size());
+        assertTrue(result.getModules().get(0).getErrors().get(0).contains("FileAlreadyExistsException"));
+        assertTrue(read(root.resolve(BatchDiagramGenerator.INDEX_FILE)).contains("    {\"name\": \"blocked\", \"errors\": 1, \"diagrams\": []},\n" +
+                                                                                 "    {\"name\": \"core\", \"errors\": 0, \"diagrams\": [\n"));
+    }
+
+    private static void write(Path root, String path, String content) throws IOException
+    {
+        Path file = root.resolve(path.replace('/', File.separatorChar));
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
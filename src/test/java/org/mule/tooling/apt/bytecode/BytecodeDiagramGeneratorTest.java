@@ -0,0 +1,226 @@
+package org.mule.tooling.apt.bytecode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tooling.apt.model.Interner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BytecodeDiagramGeneratorTest
+{
+    private static String CLASS_SOURCE_CODE = "package com.foo;\n" +
+                                              "\n" +
+                                              "public class MyClass\n" +
+                                              "{\n" +
+                                              "    private int id;\n" +
+                                              "    protected String[] names;\n" +
+                                              "\n" +
+                                              "    public int getId()\n" +
+                                              "    {\n" +
+                                              "        return id;\n" +
+                                              "    }\n" +
+                                              "\n" +
+                                              "    public static synchronized void setId(MyClass target, long id)\n" +
+                                              "    {\n" +
+                                              "    }\n" +
+                                              "}\n";
+
+    private static String CLASS_WITH_GENERICS = "package com.foo;\n" +
+                                                "import java.util.Comparator;\n" +
+                                                "\n" +
+                                                "public final class XmlOrderComparator implements Comparator<Object> {\n" +
+                                                "\n" +
+                                                "    @Override\n" +
+                                                "    public int compare(Object from, Object to) {\n" +
+                                                "        Runnable anonymous = new Runnable() { public void run() {} };\n" +
+                                                "        return 1;\n" +
+                                                "    }\n" +
+                                                "}\n";
+
+    private static String CREATOR = "package com.arg;\n" +
+                                    "\n" +
+                                    "public interface Creator extends Comparable<Creator>\n" +
+                                    "{\n" +
+                                    "    com.foo.MyClass create(int count);\n" +
+                                    "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void diagramsFromClassDirectory() throws IOException
+    {
+        File classes = compile();
+        File output = temporaryFolder.newFolder("diagrams");
+        int packages = new BytecodeDiagramGenerator(2).generate(Collections.singletonList(classes.toPath()), output.toPath());
+
+        assertEquals(2, packages);
+        assertEquals("[plantuml, com-foo-class-diagram, svg]\n" +
+                     "....\n" +
+                     "package com.foo {\n" +
+                     "class com.foo.MyClass{\n" +
+                     "\t-id: int\n" +
+                     "\t#names: java.lang.String[]\n" +
+                     "\t+<init>(): void\n" +
+                     "\t+getId(): int\n" +
+                     "\t+ {static} synchronizedsetId(com.foo.MyClass target,long id): void\n" +
+                     "}\n" +
+                     "class com.foo.XmlOrderComparator{\n" +
+                     "\t+<init>(): void\n" +
+                     "\t+compare(java.lang.Object from,java.lang.Object to): int\n" +
+                     "}\n" +
+                     "java.util.Comparator<|--com.foo.XmlOrderComparator\n" +
+                     "\n" +
+                     "}\n" +
+                     "hide members\n" +
+                     "....",
+                     read(output, "com/foo/com-foo-class-diagram.adoc"));
+        assertTrue(read(output, "com/arg/com-arg-class-diagram.adoc").contains("interface com.arg.Creator{\n" +
+                                                                              "\tcreate(int count): com.foo.MyClass\n" +
+                                                                              "}\n" +
+                                                                              "java.lang.Comparable<|--com.arg.Creator\n"));
+    }
+
+    @Test
+    public void jarAndDirectoryProduceTheSameDiagrams() throws IOException
+    {
+        File classes = compile();
+        File jar = temporaryFolder.newFile("classes.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar.toPath())))
+        {
+            for (Path classFile : classFiles(classes))
+            {
+                output.putNextEntry(new ZipEntry(classes.toPath().relativize(classFile).toString().replace(File.separatorChar, '/')));
+                Files.copy(classFile, output);
+                output.closeEntry();
+            }
+        }
+        File fromDirectory = temporaryFolder.newFolder("fromDirectory");
+        File fromJar = temporaryFolder.newFolder("fromJar");
+        new BytecodeDiagramGenerator(1).generate(Collections.singletonList(classes.toPath()), fromDirectory.toPath());
+        new BytecodeDiagramGenerator(1).generate(Collections.singletonList(jar.toPath()), fromJar.toPath());
+
+        assertEquals(read(fromDirectory, "com/foo/com-foo-class-diagram.adoc"), read(fromJar, "com/foo/com-foo-class-diagram.adoc"));
+        assertEquals(read(fromDirectory, "com/arg/com-arg-class-diagram.adoc"), read(fromJar, "com/arg/com-arg-class-diagram.adoc"));
+    }
+
+    @Test
+    public void memberClassesNestedAndFirstRootWins() throws IOException
+    {
+        File first = compile("first", "com/foo/Outer.java", "package com.foo;\n\npublic class Outer\n{\n    public static class Inner implements Runnable\n    {\n        public void run()\n        {\n        }\n    }\n}\n");
+        File second = compile("second", "com/foo/Outer.java", "package com.foo;\n\npublic class Outer\n{\n    private int count;\n}\n");
+        File output = temporaryFolder.newFolder("diagrams");
+        new BytecodeDiagramGenerator(2).generate(Arrays.asList(first.toPath(), second.toPath()), output.toPath());
+
+        assertEquals("[plantuml, com-foo-class-diagram, svg]\n" +
+                     "....\n" +
+                     "package com.foo {\n" +
+                     "class com.foo.Outer{\n" +
+                     "\t+<init>(): void\n" +
+                     "}\n" +
+                     "class com.foo.Outer.Inner{\n" +
+                     "\t+<init>(): void\n" +
+                     "\t+run(): void\n" +
+                     "}\n" +
+                     "\n" +
+                     "}\n" +
+                     "hide members\n" +
+                     "....",
+                     read(output, "com/foo/com-foo-class-diagram.adoc"));
+    }
+
+    @Test
+    public void onlyClassesWithoutOuterClassSkipped() throws IOException
+    {
+        File classes = compile("classes", "com/foo/Outer.java", "package com.foo;\n\npublic class Outer\n{\n    public static class $1\n    {\n    }\n\n" +
+                                                                "    public void run()\n    {\n        class Local\n        {\n        }\n    }\n}\n");
+        Interner interner = new Interner();
+
+        assertEquals("com.foo.Outer", parse(classes, "com/foo/Outer$$1.class", interner).getOuterName());
+        assertNull(parse(classes, "com/foo/Outer$1Local.class", interner));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noThreadsRejected()
+    {
+        new BytecodeDiagramGenerator(0);
+    }
+
+    private File compile() throws IOException
+    {
+        return compile("classes", "com/foo/MyClass.java", CLASS_SOURCE_CODE, "com/foo/XmlOrderComparator.java", CLASS_WITH_GENERICS,
+                       "com/arg/Creator.java", CREATOR);
+    }
+
+    /**
+     * @param pathsAndSources source file paths, each followed by its content
+     */
+    private File compile(String name, String... pathsAndSources) throws IOException
+    {
+        File sources = temporaryFolder.newFolder(name + "-src");
+        File classes = temporaryFolder.newFolder(name);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < pathsAndSources.length; i += 2)
+        {
+            files.add(write(sources, pathsAndSources[i], pathsAndSources[i + 1]));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8))
+        {
+            assertTrue(compiler.getTask(null, fileManager, new DiagnosticCollector<>(),
+                                        Arrays.asList("-d", classes.getPath(), "-proc:none", "-parameters"),
+                                        null, fileManager.getJavaFileObjectsFromFiles(files)).call());
+        }
+        return classes;
+    }
+
+    private static List<Path> classFiles(File root) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root.toPath()))
+        {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static ClassFile parse(File root, String path, Interner interner) throws IOException
+    {
+        return ClassFile.parse(ByteBuffer.wrap(Files.readAllBytes(new File(root, path).toPath())), interner);
+    }
+
+    private static File write(File root, String path, String content) throws IOException
+    {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File root, String path) throws IOException
+    {
+        return new String(Files.readAllBytes(new File(root, path).toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,168 @@
+package org.mule.tooling.apt.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiagramDaemonTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String BASE_CLASS = "package com.base;\n\npublic abstract class AbstractBase implements java.io.Serializable\n{\n}\n";
+    private static final String FIRST_CHILD = "package com.one;\n\npublic class First extends com.base.AbstractBase\n{\n}\n";
+    private static final String OTHER_CLASS = "package com.foo;\n\npublic class Other\n{\n}\n";
+
+    @Test
+    public void updateGeneratesChangedAndShowingPackagesAgain() throws IOException
+    {
+        Path sources = temporaryFolder.newFolder("src").toPath();
+        Path output = temporaryFolder.newFolder("out").toPath();
+        Path base = write(sources, "com/base/AbstractBase.java", BASE_CLASS);
+        Path first = write(sources, "com/one/First.java", FIRST_CHILD);
+        write(sources, "com/foo/Other.java", OTHER_CLASS);
+        try (DiagramDaemon daemon = new DiagramDaemon(Collections.singletonList(sources), output, Collections.emptyList(), Collections.emptyMap()))
+        {
+            DiagramDaemon.Result build = daemon.build();
+            assertEquals(Collections.emptyList(), build.getErrors());
+            assertEquals(new TreeSet<>(Arrays.asList("com.base", "com.foo", "com.one")), build.getPackages());
+
+            write(sources, "com/one/First.java", FIRST_CHILD.replace("{\n}", "{\n    private int id;\n}"));
+            DiagramDaemon.Result update = daemon.update(Collections.singletonList(first));
+            assertEquals(Collections.singleton("com.one"), update.getPackages());
+            assertEquals(1, update.getSourceFiles());
+            assertTrue(read(output.resolve("com/one/com-one-class-diagram.adoc")).contains("\t-id: int\n"));
+
+            write(sources, "com/base/AbstractBase.java", BASE_CLASS.replace("java.io.Serializable", "java.io.Serializable, Cloneable"));
+            update = daemon.update(Collections.singletonList(base));
+            assertEquals(new TreeSet<>(Arrays.asList("com.base", "com.one")), update.getPackages());
+            assertTrue(read(output.resolve("com/one/com-one-class-diagram.adoc")).contains("java.lang.Cloneable<|--com.base.AbstractBase\n"));
+        }
+    }
+
+    @Test
+    public void diagramsKeptWhileSourceDoesNotParse() throws IOException
+    {
+        Path sources = temporaryFolder.newFolder("src").toPath();
+        Path output = temporaryFolder.newFolder("out").toPath();
+        Path other = write(sources, "com/foo/Other.java", OTHER_CLASS);
+        try (DiagramDaemon daemon = new DiagramDaemon(Collections.singletonList(sources), output, Collections.emptyList(), Collections.emptyMap()))
+        {
+            daemon.build();
+            String diagram = read(output.resolve("com/foo/com-foo-class-diagram.adoc"));
+
+            write(sources, "com/foo/Other.java", OTHER_CLASS.replace("{\n}", "{\n    private int\n}"));
+            DiagramDaemon.Result update = daemon.update(Collections.singletonList(other));
+            assertFalse(update.getErrors().isEmpty());
+            assertEquals(diagram, read(output.resolve("com/foo/com-foo-class-diagram.adoc")));
+        }
+    }
+
+    @Test
+    public void typeResolvedOnceItsImportIsAdded() throws IOException
+    {
+        Path sources = temporaryFolder.newFolder("src").toPath();
+        Path output = temporaryFolder.newFolder("out").toPath();
+        write(sources, "com/a/A.java", "package com.a;\n\nimport com.b.*;\n\npublic class A\n{\n    private Missing m;\n}\n");
+        write(sources, "com/b/Present.java", "package com.b;\n\npublic class Present\n{\n}\n");
+        try (DiagramDaemon daemon = new DiagramDaemon(Collections.singletonList(sources), output, Collections.emptyList(), Collections.emptyMap()))
+        {
+            daemon.build();
+            assertTrue(read(output.resolve("com/a/com-a-class-diagram.adoc")).contains("\t-m: Missing\n"));
+
+            Path missing = write(sources, "com/b/Missing.java", "package com.b;\n\npublic class Missing\n{\n}\n");
+            daemon.update(Collections.singletonList(missing));
+            assertTrue(read(output.resolve("com/a/com-a-class-diagram.adoc")).contains("\t-m: com.b.Missing\n"));
+        }
+    }
+
+    @Test
+    public void deletedPackageLosesItsDiagrams() throws IOException
+    {
+        Path sources = temporaryFolder.newFolder("src").toPath();
+        Path output = temporaryFolder.newFolder("out").toPath();
+        Path other = write(sources, "com/foo/Other.java", OTHER_CLASS);
+        try (DiagramDaemon daemon = new DiagramDaemon(Collections.singletonList(sources), output, Collections.emptyList(),
+                                                      Collections.singletonMap("diagram.formats", "plantuml,json")))
+        {
+            daemon.build();
+            assertTrue(Files.isRegularFile(output.resolve("com/foo/com-foo-class-diagram.json")));
+
+            Files.delete(other);
+            assertEquals(Collections.singleton("com.foo"), daemon.update(Collections.singletonList(other)).getPackages());
+            assertFalse(Files.exists(output.resolve("com/foo/com-foo-class-diagram.adoc")));
+            assertFalse(Files.exists(output.resolve("com/foo/com-foo-class-diagram.json")));
+        }
+    }
+
+    @Test
+    public void changesSentOverLocalSocket() throws Exception
+    {
+        Path sources = temporaryFolder.newFolder("src").toPath();
+        Path output = temporaryFolder.newFolder("out").toPath();
+        Path other = write(sources, "com/foo/Other.java", OTHER_CLASS);
+        try (DiagramDaemon daemon = new DiagramDaemon(Collections.singletonList(sources), output, Collections.emptyList(), Collections.emptyMap());
+             ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress()))
+        {
+            daemon.build();
+            Thread serving = new Thread(() ->
+            {
+                try
+                {
+                    daemon.serve(server);
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            serving.start();
+
+            write(sources, "com/foo/Other.java", OTHER_CLASS.replace("{\n}", "{\n    private long count;\n}"));
+            try (Socket client = new Socket(server.getInetAddress(), server.getLocalPort()))
+            {
+                Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+                writer.write(other + "\n\n");
+                writer.flush();
+                String response = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                assertTrue(response, response.startsWith("Updated 1 packages from 1 files in "));
+            }
+            assertTrue(read(output.resolve("com/foo/com-foo-class-diagram.adoc")).contains("\t-count: long\n"));
+            server.close();
+            serving.join();
+        }
+    }
+
+    private static Path write(Path root, String path, String content) throws IOException
+    {
+        Path file = root.resolve(path.replace('/', File.separatorChar));
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
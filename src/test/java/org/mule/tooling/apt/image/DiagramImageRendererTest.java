@@ -0,0 +1,125 @@
+package org.mule.tooling.apt.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiagramImageRendererTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String diagram(String edge)
+    {
+        return "[plantuml, com-foo-class-diagram, svg]\n" +
+               "....\n" +
+               "package com.foo {\n" +
+               edge + "\n" +
+               "}\n" +
+               "hide members\n" +
+               "....";
+    }
+
+    private static class CountingBackend implements ImageBackend
+    {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override public String getSignature()
+        {
+            return "counting";
+        }
+
+        @Override public byte[] render(String source, String format)
+        {
+            calls.incrementAndGet();
+            return (format + ":" + source).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void unchangedDiagramsComeFromTheCache() throws IOException
+    {
+        Path diagrams = temporaryFolder.newFolder("diagrams").toPath();
+        Files.createDirectories(diagrams.resolve("com/foo"));
+        Files.createDirectories(diagrams.resolve("com/bar"));
+        Files.write(diagrams.resolve("com/foo/com-foo-class-diagram.adoc"), diagram("com.foo.A<|--com.foo.B").getBytes(StandardCharsets.UTF_8));
+        Files.write(diagrams.resolve("com/bar/com-bar-class-diagram.adoc"), diagram("com.bar.A<|--com.bar.B").getBytes(StandardCharsets.UTF_8));
+        CountingBackend backend = new CountingBackend();
+        DiagramImageRenderer renderer = new DiagramImageRenderer(DiagramImageRenderer.Source.PLANTUML, backend, "svg",
+                                                                 new ImageCache(temporaryFolder.newFolder("cache").toPath()), 2);
+
+        DiagramImageRenderer.Result first = renderer.render(diagrams);
+        assertEquals(2, first.getRendered());
+        assertArrayEquals(("svg:@startuml\npackage com.foo {\ncom.foo.A<|--com.foo.B\n}\nhide members\n@enduml\n").getBytes(StandardCharsets.UTF_8),
+                          Files.readAllBytes(diagrams.resolve("com/foo/com-foo-class-diagram.svg")));
+
+        Files.write(diagrams.resolve("com/bar/com-bar-class-diagram.adoc"), diagram("com.bar.A<|--com.bar.C").getBytes(StandardCharsets.UTF_8));
+        Files.delete(diagrams.resolve("com/foo/com-foo-class-diagram.svg"));
+        DiagramImageRenderer.Result second = renderer.render(diagrams);
+        assertEquals(1, second.getRendered());
+        assertEquals(1, second.getCached());
+        assertEquals(0, second.getUnchanged());
+        assertEquals(3, backend.calls.get());
+
+        DiagramImageRenderer.Result third = renderer.render(diagrams);
+        assertEquals(0, third.getRendered());
+        assertEquals(2, third.getUnchanged());
+    }
+
+    @Test
+    public void imageIncludesWrittenNextToImages() throws IOException
+    {
+        Path diagrams = temporaryFolder.newFolder("diagrams").toPath();
+        Files.createDirectories(diagrams.resolve("com/foo"));
+        Files.write(diagrams.resolve("com/foo/com-foo-class-diagram.adoc"), diagram("com.foo.A<|--com.foo.B").getBytes(StandardCharsets.UTF_8));
+        CountingBackend backend = new CountingBackend();
+        DiagramImageRenderer renderer = new DiagramImageRenderer(DiagramImageRenderer.Source.PLANTUML, backend, "svg",
+                                                                 new ImageCache(temporaryFolder.newFolder("cache").toPath()), 1, true);
+
+        assertEquals(1, renderer.render(diagrams).getRendered());
+        assertEquals("image::com-foo-class-diagram.svg[]\n",
+                     new String(Files.readAllBytes(diagrams.resolve("com/foo/com-foo-class-diagram" + DiagramImageRenderer.IMAGE_INCLUDE_SUFFIX)),
+                                StandardCharsets.UTF_8));
+
+        DiagramImageRenderer.Result second = renderer.render(diagrams);
+        assertEquals(0, second.getRendered());
+        assertEquals(1, second.getUnchanged());
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void onlyGeneratedDiagramsRendered() throws IOException
+    {
+        Path diagrams = temporaryFolder.newFolder("diagrams").toPath();
+        Files.createDirectories(diagrams.resolve("com/foo"));
+        Files.write(diagrams.resolve("com/foo/com-foo-class-diagram-2.adoc"), diagram("com.foo.A<|--com.foo.B").getBytes(StandardCharsets.UTF_8));
+        Files.write(diagrams.resolve("project-dependency-graph.adoc"), diagram("com.foo.A-->com.bar.A").getBytes(StandardCharsets.UTF_8));
+        Files.write(diagrams.resolve("com/foo/usage.adoc"), "= Usage\n\n....\nmvn install\n....\n".getBytes(StandardCharsets.UTF_8));
+        DiagramImageRenderer renderer = new DiagramImageRenderer(DiagramImageRenderer.Source.PLANTUML, new CountingBackend(), "svg",
+                                                                 new ImageCache(temporaryFolder.newFolder("cache").toPath()), 1);
+
+        assertEquals(2, renderer.render(diagrams).getRendered());
+        assertFalse(Files.exists(diagrams.resolve("com/foo/usage.svg")));
+    }
+
+    @Test
+    public void processBackendPipesTheDiagram() throws IOException
+    {
+        assumeTrue(new File("/bin/sh").canExecute());
+        ProcessImageBackend backend = new ProcessImageBackend(Arrays.asList("/bin/sh", "-c", "cat", "sh"), "-");
+        assertArrayEquals("@startuml\n@enduml\n".getBytes(StandardCharsets.UTF_8), backend.render("@startuml\n@enduml\n", "svg"));
+    }
+}
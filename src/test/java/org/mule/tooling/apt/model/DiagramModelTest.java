@@ -0,0 +1,187 @@
+package org.mule.tooling.apt.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tooling.apt.DiagramFormat;
+import org.mule.tooling.apt.DiagramRenderer;
+import org.mule.tooling.apt.DiagramRendererFactory;
+import org.mule.tooling.apt.DiagramWriter;
+import org.mule.tooling.apt.PlantUmlRenderer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class DiagramModelTest
+{
+    private static DiagramModel sample()
+    {
+        TypeModel shape = new TypeModel("com.foo.Shape", TypeModel.Kind.INTERFACE, null, Collections.emptyList(),
+                                        Collections.singletonList(MemberModel.method("area", Modifiers.PUBLIC | Modifiers.ABSTRACT, "double",
+                                                                                     new String[] {"int"}, new String[] {"precision"})),
+                                        Collections.emptyList());
+        TypeModel square = new TypeModel("com.foo.Square", TypeModel.Kind.CLASS, null, Collections.singletonList("com.foo.Shape"),
+                                          Arrays.asList(MemberModel.field("SIDES", Modifiers.PUBLIC | Modifiers.STATIC | Modifiers.FINAL, "int"),
+                                                        MemberModel.method("area", Modifiers.PUBLIC, "double", new String[] {"int"}, new String[] {"precision"})),
+                                          Collections.emptyList());
+        DiagramModel.Builder builder = DiagramModel.builder("com-foo-class-diagram", "com.foo");
+        assertTrue(builder.addType(square));
+        assertTrue(builder.addType(shape));
+        assertFalse(builder.addType(shape.stub()));
+        assertTrue(builder.addEdge("com.foo.Shape", "com.foo.Square"));
+        assertFalse(builder.addEdge("com.foo.Shape", "com.foo.Square"));
+        return builder.build();
+    }
+
+    private static String render(DiagramModel diagram) throws IOException
+    {
+        return render(diagram, new PlantUmlRenderer());
+    }
+
+    private static String render(DiagramModel diagram, DiagramRenderer renderer) throws IOException
+    {
+        StringWriter content = new StringWriter();
+        try (DiagramWriter writer = new DiagramWriter(content))
+        {
+            renderer.render(diagram, writer);
+        }
+        return content.toString();
+    }
+
+    private static DiagramRendererFactory format(String name)
+    {
+        return DiagramFormat.load(DiagramModelTest.class.getClassLoader()).get(name);
+    }
+
+    @Test
+    public void renderModel() throws IOException
+    {
+        assertEquals("[plantuml, com-foo-class-diagram, svg]\n" +
+                     "....\n" +
+                     "package com.foo {\n" +
+                     "class com.foo.Square{\n" +
+                     "\t+ {static}SIDES: int\n" +
+                     "\t+area(int precision): double\n" +
+                     "}\n" +
+                     "interface com.foo.Shape{\n" +
+                     "\tarea(int precision): double\n" +
+                     "}\n" +
+                     "com.foo.Shape<|--com.foo.Square\n" +
+                     "\n" +
+                     "}\n" +
+                     "hide members\n" +
+                     "....", render(sample()));
+    }
+
+    @Test
+    public void mermaidIdsOfSimilarNamesDoNotCollide() throws IOException
+    {
+        DiagramModel.Builder builder = DiagramModel.builder("a-class-diagram", "a");
+        for (String name : Arrays.asList("a.b_c", "a_b.c", "a.Outer.Inner", "a.Outer_Inner", "a.Outer$Inner"))
+        {
+            builder.addType(new TypeModel(name, TypeModel.Kind.CLASS, null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+        }
+        assertEquals("---\n" +
+                     "title: a\n" +
+                     "---\n" +
+                     "classDiagram\n" +
+                     "class a_b_95_c[\"a.b_c\"]\n" +
+                     "class a_95_b_c[\"a_b.c\"]\n" +
+                     "class a_Outer_Inner[\"a.Outer.Inner\"]\n" +
+                     "class a_Outer_95_Inner[\"a.Outer_Inner\"]\n" +
+                     "class a_Outer_36_Inner[\"a.Outer$Inner\"]\n",
+                     render(builder.build(), format("mermaid").createRenderer(true)));
+    }
+
+    @Test
+    public void renderMermaid() throws IOException
+    {
+        assertEquals("---\n" +
+                     "title: com.foo\n" +
+                     "---\n" +
+                     "classDiagram\n" +
+                     "class com_foo_Square[\"com.foo.Square\"]\n" +
+                     "com_foo_Square : +int SIDES$\n" +
+                     "com_foo_Square : +area(int precision) double\n" +
+                     "class com_foo_Shape[\"com.foo.Shape\"]\n" +
+                     "<<interface>> com_foo_Shape\n" +
+                     "com_foo_Shape : +area(int precision) double*\n" +
+                     "com_foo_Shape <|-- com_foo_Square\n",
+                     render(sample(), format("mermaid").createRenderer(false)));
+    }
+
+    @Test
+    public void renderDot() throws IOException
+    {
+        assertEquals("digraph \"com-foo-class-diagram\" {\n" +
+                     "\tlabel=\"com.foo\";\n" +
+                     "\trankdir=BT;\n" +
+                     "\tnode [shape=record];\n" +
+                     "\tedge [arrowhead=empty];\n" +
+                     "\t\"com.foo.Square\" [label=\"{com.foo.Square}\"];\n" +
+                     "\t\"com.foo.Shape\" [label=\"{\\<\\<interface\\>\\>\\ncom.foo.Shape}\"];\n" +
+                     "\t\"com.foo.Square\" -> \"com.foo.Shape\";\n" +
+                     "}\n",
+                     render(sample(), format("dot").createRenderer(true)));
+    }
+
+    @Test
+    public void renderJson() throws IOException
+    {
+        assertEquals("{\n" +
+                     "  \"name\": \"com-foo-class-diagram\",\n" +
+                     "  \"package\": \"com.foo\",\n" +
+                     "  \"types\": [\n" +
+                     "    {\"name\": \"com.foo.Square\", \"kind\": \"class\", \"superclass\": null, \"interfaces\": [\"com.foo.Shape\"], \"members\": [" +
+                     "{\"name\": \"SIDES\", \"kind\": \"field\", \"modifiers\": [\"public\", \"static\", \"final\"], \"type\": \"int\"}, " +
+                     "{\"name\": \"area\", \"kind\": \"method\", \"modifiers\": [\"public\"], \"type\": \"double\", \"parameters\": [{\"name\": \"precision\", \"type\": \"int\"}]}" +
+                     "], \"nestedTypes\": []},\n" +
+                     "    {\"name\": \"com.foo.Shape\", \"kind\": \"interface\", \"superclass\": null, \"interfaces\": [], \"members\": [" +
+                     "{\"name\": \"area\", \"kind\": \"method\", \"modifiers\": [\"public\", \"abstract\"], \"type\": \"double\", \"parameters\": [{\"name\": \"precision\", \"type\": \"int\"}]}" +
+                     "], \"nestedTypes\": []}\n" +
+                     "  ],\n" +
+                     "  \"edges\": [\n" +
+                     "    {\"parent\": \"com.foo.Shape\", \"child\": \"com.foo.Square\"}\n" +
+                     "  ],\n" +
+                     "  \"relations\": [\n" +
+                     "  ]\n" +
+                     "}\n",
+                     render(sample(), format("json").createRenderer(true)));
+    }
+
+    @Test
+    public void serializedModelRendersTheSame() throws IOException, ClassNotFoundException
+    {
+        DiagramModel diagram = sample();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes))
+        {
+            output.writeObject(diagram);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            assertEquals(render(diagram), render((DiagramModel) input.readObject()));
+        }
+    }
+
+    @Test
+    public void edgesShareNodeNames()
+    {
+        DiagramModel.Builder builder = DiagramModel.builder("d", "p");
+        builder.addEdge(new String("a.Parent"), "a.First");
+        builder.addEdge(new String("a.Parent"), "a.Second");
+        DiagramModel diagram = builder.build();
+        assertEquals(2, diagram.getEdgeCount());
+        assertSame(diagram.getEdgeParent(0), diagram.getEdgeParent(1));
+    }
+}
@@ -0,0 +1,62 @@
+package org.mule.tooling.apt.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class RelationshipGraphTest
+{
+    private static TypeModel type(String name, String superclass, MemberModel... members)
+    {
+        return new TypeModel(name, TypeModel.Kind.CLASS, superclass, Collections.emptyList(), Arrays.asList(members), Collections.emptyList());
+    }
+
+    @Test
+    public void membersResolvedThroughTheIndex()
+    {
+        RelationshipGraph.Builder builder = RelationshipGraph.builder();
+        builder.register("com.foo.Order");
+        builder.register("com.foo.Item");
+        builder.register("com.foo.Base");
+        builder.addType(type("com.foo.Order", "com.foo.Base",
+                             MemberModel.method("add", Modifiers.PUBLIC, "void", new String[] {"com.foo.Item..."}, new String[] {"items"}),
+                             MemberModel.field("items", Modifiers.PRIVATE, "java.util.Map<java.lang.String,com.foo.Item[]>"),
+                             MemberModel.method("copy", Modifiers.PUBLIC, "com.foo.Order", new String[0], new String[0]),
+                             MemberModel.field("unknown", Modifiers.PRIVATE, "com.bar.Unknown")));
+        builder.addType(type("com.foo.Item", null, MemberModel.method("order", Modifiers.PUBLIC, "com.foo.Order", new String[0], new String[0])));
+        RelationshipGraph graph = builder.build();
+
+        assertEquals(3, graph.getNodeCount());
+        assertEquals(3, graph.getEdgeCount());
+        assertEquals(2, graph.getOutDegree(0));
+        assertEquals("com.foo.Base", graph.getName(graph.getTarget(0, 0)));
+        assertEquals(Relation.INHERITANCE, graph.getRelation(0, 0));
+        assertEquals("com.foo.Item", graph.getName(graph.getTarget(0, 1)));
+        assertEquals(Relation.ASSOCIATION, graph.getRelation(0, 1));
+        assertEquals(1, graph.getOutDegree(1));
+        assertEquals(Relation.DEPENDENCY, graph.getRelation(1, 0));
+        assertEquals(0, graph.getOutDegree(2));
+        assertNull(graph.getKind(2));
+    }
+
+    @Test
+    public void graphAsDiagram()
+    {
+        RelationshipGraph.Builder builder = RelationshipGraph.builder();
+        builder.register("b.Second");
+        builder.register("a.First");
+        builder.addType(type("b.Second", "a.First", MemberModel.field("first", Modifiers.PRIVATE, "a.First")));
+        builder.addType(type("a.First", null));
+        DiagramModel diagram = builder.build().toDiagram("graph");
+
+        assertEquals("a.First", diagram.getTypes().get(0).getName());
+        assertEquals("b.Second", diagram.getTypes().get(1).getName());
+        assertEquals(1, diagram.getEdgeCount());
+        assertEquals("a.First", diagram.getEdgeParent(0));
+        assertEquals(0, diagram.getRelationCount());
+    }
+}